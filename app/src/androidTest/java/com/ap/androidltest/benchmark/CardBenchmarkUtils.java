@@ -0,0 +1,65 @@
+package com.ap.androidltest.benchmark;
+
+import android.app.Activity;
+
+import com.ap.androidltest.R;
+import com.ap.androidltest.widget.CardAdapter;
+import com.ap.androidltest.widget.GalleryRecyclerView;
+import com.bumptech.glide.Glide;
+
+/**
+ * Cards of the gallery screens bound outside of any layout, so only the adapter work is timed
+ */
+final class CardBenchmarkUtils {
+
+    static final int ITEM_COUNT = 100;
+    private static final int[] IMAGES = new int[]{R.drawable.img1, R.drawable.img2, R.drawable.img3,
+            R.drawable.img4, R.drawable.img5};
+
+    private CardBenchmarkUtils() {
+    }
+
+    /**
+     * Adapter of the cards with distinct titles, should be called on the main thread
+     *
+     * @param activity activity
+     * @param layoutId card layout
+     * @return adapter
+     */
+    static CardAdapter createAdapter(Activity activity, int layoutId) {
+        CharSequence[] titles = new CharSequence[ITEM_COUNT];
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            titles[i] = "Card " + i;
+        }
+        return new CardAdapter(activity, Glide.with(activity), layoutId,
+                new CardAdapter.ArrayDataSource(titles, IMAGES));
+    }
+
+    /**
+     * Create the holders the way the gallery does, views are inflated on demand
+     *
+     * @param activity activity
+     * @param adapter  adapter
+     * @param count    number of holders
+     * @return holders
+     */
+    static CardAdapter.CardViewHolder[] createHolders(Activity activity, CardAdapter adapter, int count) {
+        GalleryRecyclerView parent = new GalleryRecyclerView(activity);
+        CardAdapter.CardViewHolder[] holders = new CardAdapter.CardViewHolder[count];
+        for (int i = 0; i < count; i++) {
+            holders[i] = adapter.onCreateViewHolder(parent, 0);
+        }
+        return holders;
+    }
+
+    /**
+     * Time per operation in microseconds, for the log
+     *
+     * @param nanos total time
+     * @param count number of operations
+     * @return formatted time
+     */
+    static String perItem(long nanos, int count) {
+        return String.format("%.1f us", nanos / 1000f / count);
+    }
+}
@@ -0,0 +1,80 @@
+package com.ap.androidltest.benchmark;
+
+import android.test.ActivityInstrumentationTestCase2;
+import android.test.UiThreadTest;
+import android.util.Log;
+
+import com.ap.androidltest.R;
+import com.ap.androidltest.activity.MainActivity;
+import com.ap.androidltest.widget.CardAdapter;
+
+/**
+ * Bind time of the card adapter per item: the full bind of another item, the bind of the item
+ * the holder already shows, which skips the unchanged views, and the payload bind of the title.
+ * Results are logged, compare them on the same device.
+ */
+public class CardBindBenchmark extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    private static final String TAG = CardBindBenchmark.class.getSimpleName();
+    private static final int HOLDER_COUNT = 10;
+    private static final int ROUNDS = 50;
+
+    public CardBindBenchmark() {
+        super(MainActivity.class);
+    }
+
+    @UiThreadTest
+    public void testBindTime() {
+        CardAdapter adapter = CardBenchmarkUtils.createAdapter(getActivity(), R.layout.item_coverflow_view);
+        CardAdapter.CardViewHolder[] holders = CardBenchmarkUtils.createHolders(getActivity(), adapter, HOLDER_COUNT);
+        //Warm-up
+        bindOtherItems(adapter, holders);
+        bindSameItems(adapter, holders);
+        bindTitlePayloads(adapter, holders);
+
+        final int binds = ROUNDS * HOLDER_COUNT;
+        Log.i(TAG, "Full bind " + CardBenchmarkUtils.perItem(bindOtherItems(adapter, holders), binds)
+                + ", bind of the same item " + CardBenchmarkUtils.perItem(bindSameItems(adapter, holders), binds)
+                + ", title payload bind " + CardBenchmarkUtils.perItem(bindTitlePayloads(adapter, holders), binds));
+    }
+
+    /*
+     * Holders move to other items every round, with other titles and images
+     */
+    private static long bindOtherItems(CardAdapter adapter, CardAdapter.CardViewHolder[] holders) {
+        final long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < holders.length; i++) {
+                adapter.onBindViewHolder(holders[i], (round * (holders.length + 1) + i) % CardBenchmarkUtils.ITEM_COUNT);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long bindSameItems(CardAdapter adapter, CardAdapter.CardViewHolder[] holders) {
+        final long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < holders.length; i++) {
+                adapter.onBindViewHolder(holders[i], i);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long bindTitlePayloads(CardAdapter adapter, CardAdapter.CardViewHolder[] holders) {
+        for (int i = 0; i < holders.length; i++) {
+            adapter.onBindViewHolder(holders[i], i);
+        }
+        long elapsed = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            //Only the binds are timed, not the notifications
+            adapter.notifyItemRangePayloadChanged(0, holders.length, CardAdapter.PAYLOAD_TITLE);
+            final long start = System.nanoTime();
+            for (int i = 0; i < holders.length; i++) {
+                adapter.onBindViewHolder(holders[i], i);
+            }
+            elapsed += System.nanoTime() - start;
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,103 @@
+package com.ap.androidltest.benchmark;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.test.ActivityInstrumentationTestCase2;
+import android.test.UiThreadTest;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.ap.androidltest.R;
+import com.ap.androidltest.activity.MainActivity;
+import com.ap.androidltest.widget.CardAdapter;
+
+/**
+ * Inflate, bind, measure with layout, and draw time of the flat card against the card view
+ * with its children. Draw is timed on a software canvas, so it includes the work of all the
+ * views but not the render thread. Images are loaded once the main thread is free again, so
+ * both cards are drawn without them. Results are logged, compare them on the same device.
+ */
+public class CardRenderBenchmark extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    private static final String TAG = CardRenderBenchmark.class.getSimpleName();
+    private static final int CARD_COUNT = 10;
+    private static final int ROUNDS = 20;
+
+    public CardRenderBenchmark() {
+        super(MainActivity.class);
+    }
+
+    @UiThreadTest
+    public void testCardViewAgainstFlatCard() {
+        //Warm-up of both, so neither pays for the class loading
+        measure(R.layout.item_coverflow_view);
+        measure(R.layout.item_coverflow_card);
+        Log.i(TAG, "Card view: " + measure(R.layout.item_coverflow_view));
+        Log.i(TAG, "Flat card: " + measure(R.layout.item_coverflow_card));
+    }
+
+    private String measure(int layoutId) {
+        final int width = getActivity().getResources().getDimensionPixelSize(R.dimen.cover_flow_item_width);
+        final int height = getActivity().getResources().getDimensionPixelSize(R.dimen.cover_flow_item_height);
+        final int count = ROUNDS * CARD_COUNT;
+
+        FrameLayout parent = new FrameLayout(getActivity());
+        LayoutInflater inflater = LayoutInflater.from(getActivity());
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            inflater.inflate(layoutId, parent, false);
+        }
+        final long inflateTime = System.nanoTime() - start;
+
+        CardAdapter adapter = CardBenchmarkUtils.createAdapter(getActivity(), layoutId);
+        CardAdapter.CardViewHolder[] holders = CardBenchmarkUtils.createHolders(getActivity(), adapter, CARD_COUNT);
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < CARD_COUNT; i++) {
+                adapter.onBindViewHolder(holders[i], (round * (CARD_COUNT + 1) + i) % CardBenchmarkUtils.ITEM_COUNT);
+            }
+        }
+        final long bindTime = System.nanoTime() - start;
+
+        final int widthSpec = View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY);
+        final int heightSpec = View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY);
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (CardAdapter.CardViewHolder holder : holders) {
+                //Cover flow scaling lays the cards out again, the measure cache would hide it
+                forceLayout(holder.itemView);
+                holder.itemView.measure(widthSpec, heightSpec);
+                holder.itemView.layout(0, 0, width, height);
+            }
+        }
+        final long layoutTime = System.nanoTime() - start;
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (CardAdapter.CardViewHolder holder : holders) {
+                holder.itemView.draw(canvas);
+            }
+        }
+        final long drawTime = System.nanoTime() - start;
+        bitmap.recycle();
+
+        return "inflate " + CardBenchmarkUtils.perItem(inflateTime, count)
+                + ", bind " + CardBenchmarkUtils.perItem(bindTime, count)
+                + ", measure and layout " + CardBenchmarkUtils.perItem(layoutTime, count)
+                + ", draw " + CardBenchmarkUtils.perItem(drawTime, count);
+    }
+
+    private static void forceLayout(View view) {
+        view.forceLayout();
+        if (!(view instanceof ViewGroup)) return;
+        ViewGroup group = (ViewGroup) view;
+        for (int i = 0; i < group.getChildCount(); i++) {
+            forceLayout(group.getChildAt(i));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.ap.androidltest.benchmark;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+import java.util.Arrays;
+
+/**
+ * Records the intervals between the frames of the main thread. Frame which takes longer than
+ * the refresh period to draw misses the next vsync, so its interval is longer. Should be used
+ * on the main thread only.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+class FrameTimeRecorder implements Choreographer.FrameCallback {
+
+    private static final int MAX_FRAMES = 4096;
+    private static final long NANOS_PER_MS = 1000000;
+    /* Refresh period of 60 Hz displays */
+    private static final long FRAME_NANOS = 16666667;
+    private final long[] mIntervals = new long[MAX_FRAMES];
+    private int mCount;
+    private long mLastFrameNanos;
+    private boolean mRecording;
+
+    /**
+     * Start recording, intervals of the earlier recordings are kept
+     */
+    void begin() {
+        if (mRecording) return;
+        mRecording = true;
+        mLastFrameNanos = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    void end() {
+        mRecording = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRecording) return;
+        if (mLastFrameNanos != 0 && mCount < MAX_FRAMES) mIntervals[mCount++] = frameTimeNanos - mLastFrameNanos;
+        mLastFrameNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    int getFrameCount() {
+        return mCount;
+    }
+
+    /**
+     * Number of frames which missed at least one vsync
+     *
+     * @return janky frames count
+     */
+    int getJankyFrameCount() {
+        int janky = 0;
+        for (int i = 0; i < mCount; i++) {
+            //Half a period of tolerance for the vsync jitter
+            if (mIntervals[i] > FRAME_NANOS * 3 / 2) janky++;
+        }
+        return janky;
+    }
+
+    @Override
+    public String toString() {
+        if (mCount == 0) return "no frames";
+        long[] sorted = Arrays.copyOf(mIntervals, mCount);
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long interval : sorted) {
+            total += interval;
+        }
+        return mCount + " frames, mean " + toMs(total / mCount) + " ms, 90th percentile "
+                + toMs(sorted[mCount * 9 / 10]) + " ms, max " + toMs(sorted[mCount - 1]) + " ms, "
+                + getJankyFrameCount() + " janky";
+    }
+
+    private static String toMs(long nanos) {
+        return String.format("%.1f", (float) nanos / NANOS_PER_MS);
+    }
+}
@@ -0,0 +1,98 @@
+package com.ap.androidltest.benchmark;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.v7.widget.RecyclerView;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+
+import com.ap.androidltest.R;
+import com.ap.androidltest.activity.MainActivity;
+import com.ap.androidltest.widget.GalleryRecyclerView;
+
+/**
+ * Frame times of the cover flow flings with and without the hardware layers of the cards.
+ * Results are logged, compare them on the same device.
+ */
+public class LayerPolicyBenchmark extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    private static final String TAG = LayerPolicyBenchmark.class.getSimpleName();
+    private static final int FLING_VELOCITY = 8000;
+    private static final int FLING_COUNT = 6;
+    private static final long START_TIMEOUT_MS = 1000;
+    private static final long SETTLE_TIMEOUT_MS = 10000;
+    private GalleryRecyclerView mGallery;
+
+    public LayerPolicyBenchmark() {
+        super(MainActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        //Main activity opens the cover flow
+        mGallery = (GalleryRecyclerView) getActivity().findViewById(R.id.recycler_view);
+        getInstrumentation().waitForIdleSync();
+    }
+
+    public void testFlingFrameTimes() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) return;
+        assertNotNull(mGallery);
+        //Warm-up, so both runs find the views inflated and the images cached
+        measureFlings(GalleryRecyclerView.LAYER_POLICY_WHILE_SCROLLING);
+
+        FrameTimeRecorder withoutLayers = measureFlings(GalleryRecyclerView.LAYER_POLICY_NONE);
+        FrameTimeRecorder withLayers = measureFlings(GalleryRecyclerView.LAYER_POLICY_WHILE_SCROLLING);
+        Log.i(TAG, "Without layers: " + withoutLayers);
+        Log.i(TAG, "Layers while scrolling: " + withLayers);
+        assertTrue(withoutLayers.getFrameCount() > 0);
+        assertTrue(withLayers.getFrameCount() > 0);
+    }
+
+    /*
+     * Fling back and forth, frames are recorded from the fling until the gallery settles
+     */
+    private FrameTimeRecorder measureFlings(final int layerPolicy) {
+        final FrameTimeRecorder recorder = new FrameTimeRecorder();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mGallery.setLayerPolicy(layerPolicy);
+            }
+        });
+        for (int i = 0; i < FLING_COUNT; i++) {
+            final int velocity = i % 2 == 0 ? FLING_VELOCITY : -FLING_VELOCITY;
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    recorder.begin();
+                    mGallery.fling(velocity, 0);
+                }
+            });
+            waitForScrollState(true, START_TIMEOUT_MS);
+            waitForScrollState(false, SETTLE_TIMEOUT_MS);
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    recorder.end();
+                }
+            });
+        }
+        return recorder;
+    }
+
+    /*
+     * Scroll starts on the next frame after the fling, a fling which ends within a frame could
+     * be missed, so the start is only waited for
+     */
+    private void waitForScrollState(boolean scrolling, long timeout) {
+        final long deadline = SystemClock.uptimeMillis() + timeout;
+        while ((mGallery.getScrollState() != RecyclerView.SCROLL_STATE_IDLE) != scrolling) {
+            if (SystemClock.uptimeMillis() > deadline) {
+                if (scrolling) return;
+                fail("Gallery doesn't settle in " + timeout + " ms");
+            }
+            SystemClock.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.ap.androidltest.fragment;
+
+import android.content.Intent;
+import android.content.res.Resources;
+import android.graphics.Color;
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+import android.widget.ImageView;
+
+import com.ap.androidltest.R;
+import com.ap.androidltest.activity.DetailsActivity;
+import com.ap.androidltest.util.BitmapDecoder;
+import com.ap.androidltest.util.BitmapHandoff;
+
+/**
+ * Time from the tap to the first frame of the details, when the tapped card hands its image
+ * over and when the hero image has to be decoded first. Results are logged, compare them on
+ * the same device.
+ */
+public class DetailsLaunchBenchmark extends InstrumentationTestCase {
+
+    private static final String TAG = DetailsLaunchBenchmark.class.getSimpleName();
+    private static final int RUNS = 5;
+    private static final long FIRST_FRAME_TIMEOUT_MS = 5000;
+    private static final int HANDED_OVER_IMAGE = R.drawable.img1;
+    /* Never handed over, so it is always decoded */
+    private static final int DECODED_IMAGE = R.drawable.img2;
+
+    public void testTapToFirstFrame() {
+        publishCardImage(HANDED_OVER_IMAGE);
+        //Warm-up of the activity and the fragment classes
+        launchDetails(DECODED_IMAGE);
+
+        long decoded = 0;
+        long handedOver = 0;
+        for (int i = 0; i < RUNS; i++) {
+            decoded += launchDetails(DECODED_IMAGE);
+            handedOver += launchDetails(HANDED_OVER_IMAGE);
+        }
+        Log.i(TAG, "Tap to first details frame: decoded hero image " + decoded / RUNS
+                + " ms, handed over card image " + handedOver / RUNS + " ms");
+    }
+
+    /*
+     * Card shows the image in its own size, it is handed over the way a tap does
+     */
+    private void publishCardImage(final int imageId) {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Resources resources = getInstrumentation().getTargetContext().getResources();
+                ImageView card = new ImageView(getInstrumentation().getTargetContext());
+                card.setImageBitmap(BitmapDecoder.decodeSampledResource(resources, imageId,
+                        resources.getDimensionPixelSize(R.dimen.cover_flow_item_width),
+                        resources.getDimensionPixelSize(R.dimen.cover_flow_item_height), null));
+                assertTrue(BitmapHandoff.getInstance().publish(imageId, card));
+            }
+        });
+    }
+
+    /**
+     * Open the details as the card tap does and wait for their first frame
+     *
+     * @param imageId hero image
+     * @return time from the tap to the first frame in ms
+     */
+    private long launchDetails(int imageId) {
+        Intent intent = new Intent();
+        intent.putExtra(DetailsActivity.IMAGE_RESOURCE_ID, imageId);
+        intent.putExtra(DetailsActivity.CARD_TITLE, "Benchmark");
+        intent.putExtra(DetailsActivity.TITLE_TEXT_COLOR, Color.WHITE);
+        intent.putExtra(DetailsActivity.TITLE_BKG_COLOR, Color.BLACK);
+        intent.putExtra(DetailsActivity.TAP_UPTIME, SystemClock.uptimeMillis());
+        final DetailsActivity activity = launchActivityWithIntent(
+                getInstrumentation().getTargetContext().getPackageName(), DetailsActivity.class, intent);
+        try {
+            final DetailsFragment fragment = (DetailsFragment) activity.getFragmentManager().findFragmentById(R.id.container);
+            assertNotNull(fragment);
+            final long deadline = SystemClock.uptimeMillis() + FIRST_FRAME_TIMEOUT_MS;
+            final long[] time = new long[1];
+            while (true) {
+                getInstrumentation().runOnMainSync(new Runnable() {
+                    @Override
+                    public void run() {
+                        time[0] = fragment.getTapToFirstFrameMs();
+                    }
+                });
+                if (time[0] >= 0) return time[0];
+                if (SystemClock.uptimeMillis() > deadline) fail("Details are not drawn in " + FIRST_FRAME_TIMEOUT_MS + " ms");
+                SystemClock.sleep(10);
+            }
+        } finally {
+            activity.finish();
+            getInstrumentation().waitForIdleSync();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.ap.androidltest.widget;
+
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Holders which already show the changed item are updated by the payloads, everything else
+ * gets the full bind
+ */
+public class GalleryAdapterPayloadTest extends InstrumentationTestCase {
+
+    private static final int ITEM_WIDTH = 200;
+    private static final String PRICE = "price";
+    private static final String TITLE = "title";
+    private TestGalleryAdapter mAdapter;
+    private GalleryRecyclerView mGallery;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mAdapter = new TestGalleryAdapter(20, ITEM_WIDTH);
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mGallery = GalleryTestUtils.createGallery(getInstrumentation().getTargetContext(), mAdapter, false);
+                mAdapter.resetCounts();
+            }
+        });
+    }
+
+    @UiThreadTest
+    public void testPayloadBindsChangedItemOnly() {
+        mAdapter.notifyItemPayloadChanged(1, PRICE);
+        GalleryTestUtils.layout(mGallery);
+        assertEquals(0, mAdapter.mFullBindCount);
+        assertEquals(1, mAdapter.mPayloadBindCount);
+        assertEquals(Collections.<Object>singletonList(PRICE), mAdapter.mBoundPayloads);
+    }
+
+    @UiThreadTest
+    public void testPayloadsOfOneItemAreBoundTogether() {
+        mAdapter.notifyItemPayloadChanged(1, PRICE);
+        mAdapter.notifyItemPayloadChanged(1, TITLE);
+        GalleryTestUtils.layout(mGallery);
+        assertEquals(0, mAdapter.mFullBindCount);
+        assertEquals(1, mAdapter.mPayloadBindCount);
+        assertEquals(Arrays.<Object>asList(PRICE, TITLE), mAdapter.mBoundPayloads);
+    }
+
+    @UiThreadTest
+    public void testRangePayload() {
+        mAdapter.notifyItemRangePayloadChanged(0, 3, PRICE);
+        GalleryTestUtils.layout(mGallery);
+        assertEquals(0, mAdapter.mFullBindCount);
+        assertEquals(3, mAdapter.mPayloadBindCount);
+    }
+
+    @UiThreadTest
+    public void testChangeWithoutPayloadIsFullBind() {
+        mAdapter.notifyItemChanged(1);
+        GalleryTestUtils.layout(mGallery);
+        assertEquals(1, mAdapter.mFullBindCount);
+        assertEquals(0, mAdapter.mPayloadBindCount);
+    }
+
+    @UiThreadTest
+    public void testUnknownPayloadFallsBackToFullBind() {
+        mAdapter.notifyItemPayloadChanged(1, PRICE);
+        mAdapter.notifyItemPayloadChanged(1, TestGalleryAdapter.UNKNOWN_PAYLOAD);
+        GalleryTestUtils.layout(mGallery);
+        assertEquals(1, mAdapter.mFullBindCount);
+        assertEquals(0, mAdapter.mPayloadBindCount);
+    }
+
+    /*
+     * Payload position is not valid after the move, so it should not reach any holder
+     */
+    @UiThreadTest
+    public void testMoveDropsPayloads() {
+        mAdapter.notifyItemPayloadChanged(1, PRICE);
+        mAdapter.notifyItemMoved(1, 3);
+        GalleryTestUtils.layout(mGallery);
+        assertEquals(0, mAdapter.mPayloadBindCount);
+        assertTrue(mAdapter.mBoundPayloads.isEmpty());
+    }
+
+    @UiThreadTest
+    public void testInsertDropsPayloads() {
+        mAdapter.notifyItemPayloadChanged(1, PRICE);
+        mAdapter.notifyItemInserted(0);
+        GalleryTestUtils.layout(mGallery);
+        assertEquals(0, mAdapter.mPayloadBindCount);
+    }
+
+    /*
+     * Holder of the changed item off the screen is recycled, it shows another item when the
+     * changed one is scrolled in
+     */
+    @UiThreadTest
+    public void testRecycledHolderGetsFullBind() {
+        mAdapter.notifyItemPayloadChanged(15, PRICE);
+        GalleryTestUtils.layout(mGallery);
+        mGallery.scrollBy(15 * ITEM_WIDTH, 0);
+        assertEquals(15, GalleryTestUtils.getLayoutManager(mGallery).getCurrentCenteredPosition());
+        assertEquals(0, mAdapter.mPayloadBindCount);
+        assertTrue(mAdapter.mFullBindCount > 0);
+    }
+}
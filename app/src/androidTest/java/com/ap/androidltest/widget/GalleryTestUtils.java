@@ -0,0 +1,50 @@
+package com.ap.androidltest.widget;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+/**
+ * Galleries which are laid out without a window, so the tests control every layout pass
+ */
+final class GalleryTestUtils {
+
+    static final int GALLERY_WIDTH = 1000;
+    static final int GALLERY_HEIGHT = 400;
+
+    private GalleryTestUtils() {
+    }
+
+    /**
+     * Create the gallery and lay it out. Item animations are off, so changes are applied by
+     * the next layout pass at once.
+     *
+     * @param context context of the gallery
+     * @param adapter adapter
+     * @param loop    true to show the items in loop
+     * @return laid out gallery
+     */
+    static GalleryRecyclerView createGallery(Context context, RecyclerView.Adapter adapter, boolean loop) {
+        GalleryRecyclerView gallery = new GalleryRecyclerView(context);
+        gallery.setItemAnimator(null);
+        gallery.setShowItemsInLoop(loop);
+        gallery.setAdapter(adapter);
+        layout(gallery);
+        return gallery;
+    }
+
+    /**
+     * Measure and lay out the view in the gallery size, as its window would do
+     *
+     * @param view view
+     */
+    static void layout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(GALLERY_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(GALLERY_HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, GALLERY_WIDTH, GALLERY_HEIGHT);
+    }
+
+    static BaseGalleryLayoutManager getLayoutManager(GalleryRecyclerView gallery) {
+        return (BaseGalleryLayoutManager) gallery.getLayoutManager();
+    }
+}
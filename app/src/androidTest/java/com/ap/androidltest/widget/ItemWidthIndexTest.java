@@ -0,0 +1,216 @@
+package com.ap.androidltest.widget;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the width index against plain prefix sums of a list of widths, which is changed the
+ * same way as the index
+ */
+public class ItemWidthIndexTest extends TestCase {
+
+    private static final int COUNT = 37;
+    private static final int DEFAULT_WIDTH = 100;
+    private ItemWidthIndex mIndex;
+    private List<Integer> mWidths;
+    private Random mRandom;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mIndex = new ItemWidthIndex();
+        mIndex.reset(COUNT, DEFAULT_WIDTH);
+        mWidths = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            mWidths.add(DEFAULT_WIDTH);
+        }
+        //Fixed seed, so a failure could be reproduced
+        mRandom = new Random(17);
+    }
+
+    public void testUniformWidths() {
+        assertTrue(mIndex.isUniform());
+        assertMatchesWidths();
+        assertEquals(0, mIndex.getPositionAt(-1));
+        assertEquals(COUNT - 1, mIndex.getPositionAt(Long.MAX_VALUE));
+    }
+
+    public void testSetWidth() {
+        for (int i = 0; i < COUNT; i++) {
+            setWidth(mRandom.nextInt(COUNT), 1 + mRandom.nextInt(300));
+            assertMatchesWidths();
+        }
+        assertFalse(mIndex.isUniform());
+    }
+
+    public void testWidthIsAtLeastOnePixel() {
+        mIndex.setWidth(3, 0);
+        assertEquals(1, mIndex.getWidth(3));
+        assertEquals(1, mIndex.getMinWidth());
+    }
+
+    public void testMinWidth() {
+        setWidth(5, 40);
+        setWidth(6, 70);
+        assertEquals(40, mIndex.getMinWidth());
+        //Minimum never goes up until the next reset
+        setWidth(5, 200);
+        assertEquals(40, mIndex.getMinWidth());
+        mIndex.reset(COUNT, DEFAULT_WIDTH);
+        assertEquals(DEFAULT_WIDTH, mIndex.getMinWidth());
+    }
+
+    public void testInsert() {
+        setRandomWidths();
+        insert(0, 2);
+        assertMatchesWidths();
+        insert(10, 5);
+        assertMatchesWidths();
+        insert(mWidths.size(), 3);
+        assertMatchesWidths();
+    }
+
+    public void testInsertBeyondCapacity() {
+        setRandomWidths();
+        insert(COUNT / 2, COUNT * 3);
+        assertMatchesWidths();
+    }
+
+    public void testRemove() {
+        setRandomWidths();
+        remove(0, 2);
+        assertMatchesWidths();
+        remove(10, 5);
+        assertMatchesWidths();
+        remove(mWidths.size() - 3, 3);
+        assertMatchesWidths();
+    }
+
+    public void testMoveForward() {
+        setRandomWidths();
+        move(2, 10, 3);
+        assertMatchesWidths();
+        move(0, mWidths.size() - 1, 1);
+        assertMatchesWidths();
+    }
+
+    public void testMoveBackward() {
+        setRandomWidths();
+        move(10, 2, 3);
+        assertMatchesWidths();
+        move(mWidths.size() - 1, 0, 1);
+        assertMatchesWidths();
+    }
+
+    public void testStructuralChangesOfUniformWidths() {
+        insert(3, 4);
+        remove(0, 2);
+        move(1, 5, 2);
+        assertTrue(mIndex.isUniform());
+        assertMatchesWidths();
+    }
+
+    /*
+     * Changes of one layout pass come before any query, the tree is built once for all of them
+     */
+    public void testChangesBeforeQuery() {
+        setRandomWidths();
+        insert(4, 3);
+        setWidth(5, 250);
+        remove(20, 6);
+        move(1, 12, 4);
+        setWidth(0, 7);
+        insert(0, 1);
+        assertMatchesWidths();
+    }
+
+    public void testRandomChanges() {
+        setRandomWidths();
+        for (int i = 0; i < 500; i++) {
+            final int size = mWidths.size();
+            switch (mRandom.nextInt(4)) {
+                case 0:
+                    insert(mRandom.nextInt(size + 1), 1 + mRandom.nextInt(4));
+                    break;
+                case 1:
+                    if (size > 10) {
+                        int count = 1 + mRandom.nextInt(4);
+                        remove(mRandom.nextInt(size - count + 1), count);
+                    }
+                    break;
+                case 2:
+                    int count = 1 + mRandom.nextInt(4);
+                    move(mRandom.nextInt(size - count + 1), mRandom.nextInt(size - count + 1), count);
+                    break;
+                default:
+                    setWidth(mRandom.nextInt(size), 1 + mRandom.nextInt(300));
+                    break;
+            }
+            //Queries only now and then, so several changes pile up before the tree is built
+            if (mRandom.nextInt(5) == 0) assertMatchesWidths();
+        }
+        assertMatchesWidths();
+    }
+
+    /*
+     * Uniform widths need no memory for the items, so the count could be as big as the position
+     */
+    public void testHugeUniformCount() {
+        mIndex.reset(Integer.MAX_VALUE, 300);
+        final int last = Integer.MAX_VALUE - 1;
+        assertEquals(300L * last, mIndex.getOffset(last));
+        assertEquals(300L * Integer.MAX_VALUE, mIndex.getTotalWidth());
+        assertEquals(last, mIndex.getPositionAt(300L * last + 299));
+        assertEquals(last, mIndex.getPositionAt(Long.MAX_VALUE));
+    }
+
+    private void setRandomWidths() {
+        for (int i = 0; i < mWidths.size(); i++) {
+            setWidth(i, 1 + mRandom.nextInt(300));
+        }
+    }
+
+    private void setWidth(int position, int width) {
+        mIndex.setWidth(position, width);
+        mWidths.set(position, width);
+    }
+
+    private void insert(int positionStart, int itemCount) {
+        mIndex.insert(positionStart, itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            mWidths.add(positionStart, DEFAULT_WIDTH);
+        }
+    }
+
+    private void remove(int positionStart, int itemCount) {
+        mIndex.remove(positionStart, itemCount);
+        mWidths.subList(positionStart, positionStart + itemCount).clear();
+    }
+
+    private void move(int from, int to, int itemCount) {
+        mIndex.move(from, to, itemCount);
+        List<Integer> moved = new ArrayList<>(mWidths.subList(from, from + itemCount));
+        mWidths.subList(from, from + itemCount).clear();
+        mWidths.addAll(to, moved);
+    }
+
+    private void assertMatchesWidths() {
+        final int count = mWidths.size();
+        assertEquals(count, mIndex.getCount());
+        long offset = 0;
+        for (int i = 0; i < count; i++) {
+            final int width = mWidths.get(i);
+            assertEquals("Width of " + i, width, mIndex.getWidth(i));
+            assertEquals("Offset of " + i, offset, mIndex.getOffset(i));
+            assertEquals("Item at the start of " + i, i, mIndex.getPositionAt(offset));
+            assertEquals("Item at the end of " + i, i, mIndex.getPositionAt(offset + width - 1));
+            offset += width;
+        }
+        assertEquals(offset, mIndex.getOffset(count));
+        assertEquals(offset, mIndex.getTotalWidth());
+        assertEquals(count - 1, mIndex.getPositionAt(offset));
+    }
+}
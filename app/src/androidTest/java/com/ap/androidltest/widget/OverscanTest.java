@@ -0,0 +1,95 @@
+package com.ap.androidltest.widget;
+
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+
+/**
+ * Overscan grows with the scroll velocity between its limits, and the window never gets
+ * bigger than the data set
+ */
+public class OverscanTest extends InstrumentationTestCase {
+
+    private static final int ITEM_WIDTH = 200;
+    /* Columns which fit the gallery, plus the one partially shown while scrolling */
+    private static final int SCREEN_COLUMNS = GalleryTestUtils.GALLERY_WIDTH / ITEM_WIDTH + 1;
+    private static final float FAST_VELOCITY = 1000000f;
+
+    private GalleryRecyclerView createGallery(int itemCount) {
+        return GalleryTestUtils.createGallery(getInstrumentation().getTargetContext(),
+                new TestGalleryAdapter(itemCount, ITEM_WIDTH), true);
+    }
+
+    @UiThreadTest
+    public void testLimitsAreClamped() {
+        BaseGalleryLayoutManager layoutManager = GalleryTestUtils.getLayoutManager(createGallery(50));
+        layoutManager.setOverscanLimits(-2, -5);
+        assertEquals(0, layoutManager.getMinOverscan());
+        assertEquals(0, layoutManager.getMaxOverscan());
+        layoutManager.setOverscanLimits(3, 1);
+        assertEquals(3, layoutManager.getMinOverscan());
+        assertEquals(3, layoutManager.getMaxOverscan());
+        assertEquals(3, layoutManager.getOverscan());
+    }
+
+    @UiThreadTest
+    public void testOverscanFollowsVelocity() {
+        BaseGalleryLayoutManager layoutManager = GalleryTestUtils.getLayoutManager(createGallery(50));
+        layoutManager.setOverscanLimits(1, 4);
+        layoutManager.setScrollVelocity(0);
+        assertEquals(1, layoutManager.getOverscan());
+
+        int previous = layoutManager.getOverscan();
+        for (float velocity = 1000; velocity <= FAST_VELOCITY; velocity *= 2) {
+            layoutManager.setScrollVelocity(velocity);
+            int overscan = layoutManager.getOverscan();
+            assertTrue("Overscan at " + velocity, overscan >= previous && overscan <= 4);
+            previous = overscan;
+        }
+        assertEquals(4, layoutManager.getOverscan());
+
+        //Direction doesn't matter
+        layoutManager.setScrollVelocity(-FAST_VELOCITY);
+        assertEquals(4, layoutManager.getOverscan());
+        layoutManager.setScrollVelocity(0);
+        assertEquals(1, layoutManager.getOverscan());
+    }
+
+    @UiThreadTest
+    public void testWindowFollowsOverscan() {
+        GalleryRecyclerView gallery = createGallery(50);
+        BaseGalleryLayoutManager layoutManager = GalleryTestUtils.getLayoutManager(gallery);
+        layoutManager.setOverscanLimits(1, 4);
+        layoutManager.setScrollVelocity(FAST_VELOCITY);
+        assertEquals(SCREEN_COLUMNS + 2 * 4, layoutManager.getVisibleColumnCount());
+        assertEquals(SCREEN_COLUMNS + 2 * 4, layoutManager.getMaxWindowColumnCount());
+
+        //Window shrinks back by the layout pass once the scroll stops
+        layoutManager.setScrollVelocity(0);
+        assertTrue(gallery.isLayoutRequested());
+        GalleryTestUtils.layout(gallery);
+        assertEquals(SCREEN_COLUMNS + 2, layoutManager.getVisibleColumnCount());
+        assertTrue(gallery.getChildCount() <= SCREEN_COLUMNS + 2);
+    }
+
+    /*
+     * Small data set is never laid out twice, however big the overscan is
+     */
+    @UiThreadTest
+    public void testWindowIsClampedToItemCount() {
+        final int itemCount = SCREEN_COLUMNS + 2;
+        GalleryRecyclerView gallery = createGallery(itemCount);
+        BaseGalleryLayoutManager layoutManager = GalleryTestUtils.getLayoutManager(gallery);
+        layoutManager.setOverscanLimits(0, 10);
+        assertEquals(itemCount, layoutManager.getMaxWindowColumnCount());
+
+        layoutManager.setScrollVelocity(FAST_VELOCITY);
+        assertEquals(10, layoutManager.getOverscan());
+        assertEquals(itemCount, layoutManager.getVisibleColumnCount());
+        for (int i = 0; i < 20; i++) {
+            gallery.scrollBy(ITEM_WIDTH / 3, 0);
+            assertTrue(gallery.getChildCount() <= itemCount);
+        }
+        GalleryTestUtils.layout(gallery);
+        assertTrue(gallery.getChildCount() <= itemCount);
+    }
+}
@@ -0,0 +1,69 @@
+package com.ap.androidltest.widget;
+
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.util.Log;
+
+/**
+ * Steady scrolling of the gallery should not allocate, so flings don't trigger GCs. Views,
+ * holders and caches are created by the warm-up, the same scroll is then repeated with the
+ * allocations counted.
+ */
+public class ScrollAllocationTest extends InstrumentationTestCase {
+
+    private static final String TAG = ScrollAllocationTest.class.getSimpleName();
+    private static final int ITEM_COUNT = 30;
+    private static final int ITEM_WIDTH = 200;
+    /* Odd step, so the columns enter and leave at different offsets of the step */
+    private static final int STEP = 23;
+    private static final int ROUNDS = 3;
+
+    @UiThreadTest
+    public void testCoverFlowScrollDoesNotAllocate() {
+        //Two loops each way
+        assertScrollDoesNotAllocate(true, 2 * ITEM_COUNT * ITEM_WIDTH);
+    }
+
+    @UiThreadTest
+    public void testGalleryScrollDoesNotAllocate() {
+        //Close to the last item and back
+        assertScrollDoesNotAllocate(false, (ITEM_COUNT - 3) * ITEM_WIDTH);
+    }
+
+    private void assertScrollDoesNotAllocate(boolean loop, int distance) {
+        GalleryRecyclerView gallery = GalleryTestUtils.createGallery(getInstrumentation().getTargetContext(),
+                new TestGalleryAdapter(ITEM_COUNT, ITEM_WIDTH), loop);
+        //Window of a fixed size, the overscan of a growing one would create new views
+        gallery.setOverscanLimits(2, 2);
+        GalleryTestUtils.layout(gallery);
+        int steps = scroll(gallery, distance);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < ROUNDS; i++) {
+            steps += scroll(gallery, distance);
+        }
+        Debug.stopAllocCounting();
+        final int allocations = Debug.getThreadAllocCount();
+        Log.i(TAG, (loop ? "Cover flow" : "Gallery") + ": " + allocations + " allocations in "
+                + steps + " scroll steps after the warm-up");
+        assertEquals(0, allocations);
+    }
+
+    /*
+     * Scroll by the distance and back again
+     *
+     * @return number of scroll steps
+     */
+    private static int scroll(GalleryRecyclerView gallery, int distance) {
+        int steps = 0;
+        for (int scrolled = 0; scrolled < distance; scrolled += STEP, steps++) {
+            gallery.scrollBy(STEP, 0);
+        }
+        for (int scrolled = 0; scrolled < distance; scrolled += STEP, steps++) {
+            gallery.scrollBy(-STEP, 0);
+        }
+        return steps;
+    }
+}
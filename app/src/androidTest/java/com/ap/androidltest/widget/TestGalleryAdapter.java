@@ -0,0 +1,60 @@
+package com.ap.androidltest.widget;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adapter of plain views of a fixed width, which counts how its holders are bound. Binding
+ * doesn't allocate, so it could be used to check the layout manager for allocations.
+ */
+class TestGalleryAdapter extends GalleryAdapter<GalleryViewHolder> {
+
+    /* Payload which the adapter doesn't know, it falls back to the full bind */
+    static final Object UNKNOWN_PAYLOAD = new Object();
+    private final int mItemCount;
+    private final int mItemWidth;
+    int mFullBindCount;
+    int mPayloadBindCount;
+    /* Payloads of all the payload binds in the order they were bound */
+    final List<Object> mBoundPayloads = new ArrayList<>();
+
+    TestGalleryAdapter(int itemCount, int itemWidth) {
+        mItemCount = itemCount;
+        mItemWidth = itemWidth;
+    }
+
+    void resetCounts() {
+        mFullBindCount = 0;
+        mPayloadBindCount = 0;
+        mBoundPayloads.clear();
+    }
+
+    @Override
+    public GalleryViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View view = new View(parent.getContext());
+        view.setLayoutParams(new RecyclerView.LayoutParams(mItemWidth, ViewGroup.LayoutParams.MATCH_PARENT));
+        return new GalleryViewHolder(view, (GalleryRecyclerView) parent);
+    }
+
+    @Override
+    public void onBindItem(GalleryViewHolder holder, int position) {
+        mFullBindCount++;
+    }
+
+    @Override
+    protected boolean onBindPayloads(GalleryViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.contains(UNKNOWN_PAYLOAD)) return false;
+        mPayloadBindCount++;
+        mBoundPayloads.addAll(payloads);
+        return true;
+    }
+
+    @Override
+    public int getItemCount() {
+        return mItemCount;
+    }
+}
@@ -0,0 +1,100 @@
+package com.ap.androidltest.widget;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import com.ap.androidltest.R;
+
+/**
+ * Pre-inflated views are handed out warm, per activity, and dropped with it
+ */
+public class ViewPreInflaterTest extends InstrumentationTestCase {
+
+    private static final int LAYOUT = R.layout.item_coverflow_view;
+    private static final long INFLATE_TIMEOUT_MS = 5000;
+    private final ViewPreInflater mPreInflater = ViewPreInflater.getInstance();
+    /* Stands for the activity, so every test has scopes of its own */
+    private Context mContext;
+    private FrameLayout mParent;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext = new ContextWrapper(getInstrumentation().getTargetContext());
+        mParent = new FrameLayout(mContext);
+        mPreInflater.resetCounters();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPreInflater.clear(mContext);
+        super.tearDown();
+    }
+
+    public void testPreInflatedViewsAreWarm() {
+        preInflateAndWait(mContext, 3);
+        for (int i = 0; i < 3; i++) {
+            View view = mPreInflater.obtain(mParent, LAYOUT);
+            assertNotNull(view);
+            assertNull(view.getParent());
+        }
+        assertEquals(3, mPreInflater.getWarmCount());
+        assertEquals(0, mPreInflater.getColdCount());
+
+        //No view is ready anymore, it is inflated on demand
+        assertNotNull(mPreInflater.obtain(mParent, LAYOUT));
+        assertEquals(1, mPreInflater.getColdCount());
+    }
+
+    public void testPreInflateTopsUpToCount() {
+        preInflateAndWait(mContext, 2);
+        preInflateAndWait(mContext, 4);
+        assertEquals(4, mPreInflater.getReadyCount(mContext, LAYOUT));
+        //Lower count doesn't drop the ready views
+        mPreInflater.preInflate(mContext, LAYOUT, 1);
+        assertEquals(4, mPreInflater.getReadyCount(mContext, LAYOUT));
+    }
+
+    public void testViewsAreKeptPerActivity() {
+        Context other = new ContextWrapper(getInstrumentation().getTargetContext());
+        try {
+            preInflateAndWait(other, 2);
+            mPreInflater.obtain(mParent, LAYOUT);
+            assertEquals(0, mPreInflater.getWarmCount());
+            assertEquals(1, mPreInflater.getColdCount());
+            assertEquals(2, mPreInflater.getReadyCount(other, LAYOUT));
+        } finally {
+            mPreInflater.clear(other);
+        }
+    }
+
+    public void testReleaseDropsViews() {
+        preInflateAndWait(mContext, 2);
+        mPreInflater.release(mContext, LAYOUT);
+        assertEquals(0, mPreInflater.getReadyCount(mContext, LAYOUT));
+        mPreInflater.obtain(mParent, LAYOUT);
+        assertEquals(1, mPreInflater.getColdCount());
+    }
+
+    public void testClearDropsViews() {
+        preInflateAndWait(mContext, 2);
+        mPreInflater.clear(mContext);
+        assertEquals(0, mPreInflater.getReadyCount(mContext, LAYOUT));
+        mPreInflater.obtain(mParent, LAYOUT);
+        assertEquals(0, mPreInflater.getWarmCount());
+        assertEquals(1, mPreInflater.getColdCount());
+    }
+
+    private void preInflateAndWait(Context context, int count) {
+        mPreInflater.preInflate(context, LAYOUT, count);
+        final long deadline = SystemClock.uptimeMillis() + INFLATE_TIMEOUT_MS;
+        while (mPreInflater.getReadyCount(context, LAYOUT) < count) {
+            if (SystemClock.uptimeMillis() > deadline) fail(count + " views are not inflated in time");
+            SystemClock.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.ap.androidltest.widget;
+
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+
+/**
+ * Virtual positions of the loop continue the items in both directions, far beyond the int
+ * range of the scrolled distance
+ */
+public class VirtualPositionTest extends InstrumentationTestCase {
+
+    private static final int ITEM_WIDTH = 200;
+    /* Prime count, so the loops wrap at a different item every time */
+    private static final int ITEM_COUNT = 1000003;
+    /* Items scrolled by one step, the distance is still an int */
+    private static final int STEP_ITEMS = 10000000;
+    private static final int STEP_COUNT = (int) (Integer.MAX_VALUE / STEP_ITEMS + 1);
+
+    /*
+     * Index alone defines the virtual offsets, no views are needed
+     */
+    public void testOffsetRoundTrip() {
+        GalleryLayoutManager layoutManager = new GalleryLayoutManager();
+        layoutManager.mWidthIndex.reset(ITEM_COUNT, ITEM_WIDTH);
+        final long stride = Integer.MAX_VALUE / 4096;
+        for (long position = -2L * Integer.MAX_VALUE; position <= 2L * Integer.MAX_VALUE; position += stride) {
+            assertRoundTrip(layoutManager, position);
+        }
+        assertRoundTrip(layoutManager, Integer.MAX_VALUE);
+        assertRoundTrip(layoutManager, Integer.MAX_VALUE + 1L);
+        assertRoundTrip(layoutManager, Integer.MIN_VALUE);
+        assertRoundTrip(layoutManager, Integer.MIN_VALUE - 1L);
+        assertRoundTrip(layoutManager, ITEM_COUNT - 1);
+        assertRoundTrip(layoutManager, ITEM_COUNT);
+        assertRoundTrip(layoutManager, -1);
+    }
+
+    public void testOffsetRoundTripOfMeasuredWidths() {
+        GalleryLayoutManager layoutManager = new GalleryLayoutManager();
+        final int count = 7;
+        layoutManager.mWidthIndex.reset(count, ITEM_WIDTH);
+        long loopWidth = 0;
+        for (int i = 0; i < count; i++) {
+            layoutManager.mWidthIndex.setWidth(i, 50 + 30 * i);
+            loopWidth += 50 + 30 * i;
+        }
+        for (long loop = -3; loop <= 3; loop++) {
+            for (int i = 0; i < count; i++) {
+                long position = loop * count + i;
+                long offset = layoutManager.getVirtualOffset(position);
+                assertEquals(loop * loopWidth + layoutManager.mWidthIndex.getOffset(i), offset);
+                assertEquals(position, layoutManager.getVirtualPositionAt(offset));
+                assertEquals(position, layoutManager.getVirtualPositionAt(offset + 50 + 30 * i - 1));
+            }
+        }
+        //Far loops are found by the division
+        long far = 1000000000L * count + 3;
+        assertEquals(far, layoutManager.getVirtualPositionAt(layoutManager.getVirtualOffset(far)));
+        assertEquals(-far, layoutManager.getVirtualPositionAt(layoutManager.getVirtualOffset(-far)));
+    }
+
+    @UiThreadTest
+    public void testScrollForwardBeyondIntRange() {
+        assertScrolledThroughLoops(STEP_ITEMS);
+    }
+
+    @UiThreadTest
+    public void testScrollBackwardBeyondIntRange() {
+        assertScrolledThroughLoops(-STEP_ITEMS);
+    }
+
+    /*
+     * Every step jumps further than the window, so the layout is built from scratch at a virtual
+     * position which is far from the previous one. Centered item should be exactly the one
+     * the scrolled distance leads to.
+     */
+    private void assertScrolledThroughLoops(int stepItems) {
+        TestGalleryAdapter adapter = new TestGalleryAdapter(ITEM_COUNT, ITEM_WIDTH);
+        GalleryRecyclerView gallery = GalleryTestUtils.createGallery(
+                getInstrumentation().getTargetContext(), adapter, true);
+        BaseGalleryLayoutManager layoutManager = GalleryTestUtils.getLayoutManager(gallery);
+        assertEquals(0, layoutManager.getCurrentCenteredPosition());
+        assertEquals(0, layoutManager.getOffsetToItem(0));
+
+        long expected = 0;
+        for (int i = 0; i < STEP_COUNT; i++) {
+            gallery.scrollBy(stepItems * ITEM_WIDTH, 0);
+            expected = ((expected + stepItems) % ITEM_COUNT + ITEM_COUNT) % ITEM_COUNT;
+            assertEquals("Step " + i, expected, layoutManager.getCurrentCenteredPosition());
+            assertEquals("Step " + i, 0, layoutManager.getOffsetToItem((int) expected));
+        }
+        //Small steps still work from the far position
+        gallery.scrollBy(ITEM_WIDTH, 0);
+        assertEquals((expected + 1) % ITEM_COUNT, layoutManager.getCurrentCenteredPosition());
+    }
+
+    private static void assertRoundTrip(BaseGalleryLayoutManager layoutManager, long position) {
+        long offset = layoutManager.getVirtualOffset(position);
+        assertEquals(position * ITEM_WIDTH, offset);
+        assertEquals(position, layoutManager.getVirtualPositionAt(offset));
+        assertEquals(position, layoutManager.getVirtualPositionAt(offset + ITEM_WIDTH - 1));
+    }
+}
@@ -1,6 +1,7 @@
 package com.ap.androidltest.activity;
 
 import android.os.Bundle;
+import android.support.v4.app.ActivityCompat;
 import android.support.v7.app.ActionBarActivity;
 
 import com.ap.androidltest.R;
@@ -13,6 +14,8 @@ public class DetailsActivity extends ActionBarActivity {
     public static final String CARD_TITLE = "CARD_TITLE";
     public static final String TITLE_TEXT_COLOR = "TITLE_TEXT_COLOR";
     public static final String TITLE_BKG_COLOR = "TITLE_BKG_COLOR";
+    /* SystemClock.uptimeMillis() of the tap which opened the details */
+    public static final String TAP_UPTIME = "TAP_UPTIME";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -23,10 +26,14 @@ public class DetailsActivity extends ActionBarActivity {
         int titleTextColor = getIntent().getIntExtra(TITLE_TEXT_COLOR, -1);
         int titleBkgColor = getIntent().getIntExtra(TITLE_BKG_COLOR, -1);
         String cardTitle = getIntent().getStringExtra(CARD_TITLE);
+        long tapUptime = getIntent().getLongExtra(TAP_UPTIME, 0);
 
         if (savedInstanceState == null) {
+            //Fragment starts the transition when the image is ready
+            ActivityCompat.postponeEnterTransition(this);
             getFragmentManager().beginTransaction()
-                    .add(R.id.container, DetailsFragment.getInstance(imageId, cardTitle, titleTextColor, titleBkgColor))
+                    .add(R.id.container, DetailsFragment.getInstance(imageId, cardTitle, titleTextColor, titleBkgColor,
+                            tapUptime))
                     .commit();
         }
     }
@@ -22,10 +22,14 @@ import com.ap.androidltest.fragment.AllItemsFragment;
 import com.ap.androidltest.fragment.CoverFlowFragment;
 import com.ap.androidltest.fragment.GalleryFragment;
 import com.ap.androidltest.fragment.RecycleViewFragment;
+import com.ap.androidltest.widget.SharedViewPool;
+import com.ap.androidltest.widget.ViewPreInflater;
 
 
 public class MainActivity extends ActionBarActivity implements AdapterView.OnItemClickListener {
 
+    /* Extra which makes the gallery screens show the flat cards */
+    public static final String FLAT_CARDS = "FLAT_CARDS";
     private static final String KEY_TOOLBAR_OFFSET_Y = "KEY_TOOLBAR_OFFSET_Y";
     private static final boolean DRAWER_OVER_TOOL_BAR = true;
     private ActionBarDrawerToggle mToggle;
@@ -137,22 +141,31 @@ public class MainActivity extends ActionBarActivity implements AdapterView.OnIte
         mDrawerList.setOnItemClickListener(null);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        //Pooled and pre-inflated cards hold this activity as their context
+        SharedViewPool.clear(this);
+        ViewPreInflater.getInstance().clear(this);
+    }
+
     @Override
     public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
         setFragment(position);
     }
 
     private void setFragment(int position) {
+        final boolean flatCards = getIntent().getBooleanExtra(FLAT_CARDS, false);
         Fragment fragment;
         switch (position) {
             case 0:
                 fragment = new RecycleViewFragment();
                 break;
             case 1:
-                fragment = new GalleryFragment();
+                fragment = GalleryFragment.newInstance(flatCards);
                 break;
             case 2:
-                fragment = new CoverFlowFragment();
+                fragment = CoverFlowFragment.newInstance(flatCards);
                 break;
             default:
                 fragment = new AllItemsFragment();
@@ -1,28 +1,32 @@
 package com.ap.androidltest.fragment;
 
 
+import android.app.Activity;
 import android.app.Fragment;
 import android.content.Intent;
-import android.graphics.BitmapFactory;
+import android.graphics.Color;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.app.ActivityOptionsCompat;
 import android.support.v7.graphics.Palette;
-import android.support.v7.widget.CardView;
-import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.Button;
-import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.ap.androidltest.R;
 import com.ap.androidltest.activity.DetailsActivity;
+import com.ap.androidltest.util.BitmapHandoff;
+import com.ap.androidltest.util.PaletteCache;
+import com.ap.androidltest.widget.CardAdapter;
+import com.ap.androidltest.widget.DistanceLodPolicy;
+import com.ap.androidltest.widget.GalleryImagePreloader;
 import com.ap.androidltest.widget.GalleryRecyclerView;
-import com.ap.androidltest.widget.GalleryViewHolder;
+import com.ap.androidltest.widget.ViewPreInflater;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
 
 
 /**
@@ -31,9 +35,12 @@ import com.bumptech.glide.Glide;
 public class CoverFlowFragment extends Fragment implements GalleryRecyclerView.OnItemClickListener, GalleryRecyclerView.OnCenteredPositionChangedListener {
 
     private static final String TAG = GalleryFragment.class.getSimpleName();
+    /* Argument which selects the flat cards instead of the CardView ones */
+    public static final String ARG_FLAT_CARDS = "ARG_FLAT_CARDS";
     private final int[] images = new int[]{R.drawable.img1, R.drawable.img2, R.drawable.img3, R.drawable.img4, R.drawable.img5};
     private GalleryRecyclerView mCoverFlow;
-    private ImageView mPressedImageView;
+    private View mPressedImageView;
+    private PaletteCache.OnPaletteReadyListener mPaletteListener;
     private TextView mCoverFlowCount;
     private String[] mDataSet = new String[]{"String 1", "String 2", "String 3", "String 4",
             "String 5", "String 6", "String 7", "String 8", "String 9", "String 10", "String 11", "String 12"};
@@ -42,25 +49,98 @@ public class CoverFlowFragment extends Fragment implements GalleryRecyclerView.O
         // Required empty public constructor
     }
 
+    /**
+     * @param flatCards true to show the cards as single flat views
+     * @return fragment
+     */
+    public static CoverFlowFragment newInstance(boolean flatCards) {
+        CoverFlowFragment fragment = new CoverFlowFragment();
+        Bundle args = new Bundle();
+        args.putBoolean(ARG_FLAT_CARDS, flatCards);
+        fragment.setArguments(args);
+        return fragment;
+    }
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setRetainInstance(true);
     }
 
+    /*
+     * Retained fragment is attached to every new activity, the cards are inflated for each one
+     */
+    @Override
+    public void onAttach(Activity activity) {
+        super.onAttach(activity);
+        int itemWidth = activity.getResources().getDimensionPixelSize(R.dimen.cover_flow_item_width)
+                + 2 * activity.getResources().getDimensionPixelSize(R.dimen.space_between_items);
+        ViewPreInflater.getInstance().preInflate(activity, getCardLayout(),
+                ViewPreInflater.getColumnCount(activity.getResources().getDisplayMetrics().widthPixels, itemWidth));
+    }
+
+    @Override
+    public void onDetach() {
+        super.onDetach();
+        ViewPreInflater.getInstance().release(getActivity(), getCardLayout());
+    }
+
+    /*
+     * Flat cards draw themselves in one view, the CardView cards are inflated otherwise
+     */
+    private int getCardLayout() {
+        Bundle args = getArguments();
+        return args != null && args.getBoolean(ARG_FLAT_CARDS) ? R.layout.item_coverflow_card : R.layout.item_coverflow_view;
+    }
+
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
         // Inflate the layout for this fragment
         View view = inflater.inflate(R.layout.fragment_cover_flow, container, false);
         mCoverFlow = (GalleryRecyclerView) view.findViewById(R.id.recycler_view);
+        mCoverFlow.setItemLayout(getCardLayout());
         mCoverFlowCount = (TextView) view.findViewById(R.id.coverflow_count);
         // specify an adapter (see also next example)
         mCoverFlow.setShowItemsInLoop(true);
-        mCoverFlow.setAdapter(new MyAdapter());
+        RequestManager glide = Glide.with(this);
+        CardAdapter adapter = new CardAdapter(getActivity(), glide, getCardLayout(),
+                new CardAdapter.ArrayDataSource(mDataSet, images));
+        //Side cards are scaled down, they get half size images until they come next to the center
+        adapter.setImageLod(1, 2, true);
+        adapter.setOnCardActionListener(new CardAdapter.OnCardActionListener() {
+            @Override
+            public void onCardClick(CardAdapter.CardViewHolder holder, int position) {
+                //Gallery items are clicked through OnItemClickListener
+            }
+
+            @Override
+            public void onFirstButtonClick(CardAdapter.CardViewHolder holder, int position) {
+                Log.d(TAG, "First button clicked for position: " + position);
+                GalleryRecyclerView gallery = holder.getGalleryRecyclerView();
+                if (gallery == null) return;
+                if (position > 0) gallery.smoothScrollToPosition(position - 1);
+                else gallery.smoothScrollToPosition(mDataSet.length - 1);
+            }
+
+            @Override
+            public void onSecondButtonClick(CardAdapter.CardViewHolder holder, int position) {
+                Log.d(TAG, "Second button clicked for position: " + position);
+                GalleryRecyclerView gallery = holder.getGalleryRecyclerView();
+                if (gallery == null) return;
+                if (position < mDataSet.length - 1) gallery.smoothScrollToPosition(position + 1);
+                else gallery.smoothScrollToPosition(0);
+            }
+        });
+        mCoverFlow.setAdapter(adapter);
+        mCoverFlow.setImagePreloader(new GalleryImagePreloader(glide, adapter, GalleryImagePreloader.DEFAULT_PRELOAD_COUNT));
         mCoverFlow.setMinimumScale(0.7f);
         mCoverFlow.setMinimumAlpha(0.8f);
         mCoverFlow.setMaxZ(5.0f);
+        //Neighbours of the centered card keep all the details, the cards behind them are small
+        mCoverFlow.setViewLodPolicy(new DistanceLodPolicy()
+                .addTier(1.5f, CardAdapter.LOD_TIER_NO_SHADOW)
+                .addTier(2.5f, CardAdapter.LOD_TIER_NO_DETAILS));
         mCoverFlow.getDefaultDecoration().setHorizontalInsets(getResources().getDimensionPixelSize(R.dimen.space_between_items));
         return view;
     }
@@ -68,8 +148,14 @@ public class CoverFlowFragment extends Fragment implements GalleryRecyclerView.O
     @Override
     public void onPause() {
         super.onPause();
+        if (mPaletteListener != null) {
+            PaletteCache.getInstance().cancel(mPaletteListener);
+            mPaletteListener = null;
+        }
         mCoverFlow.setOnItemClickListener(null);
         mCoverFlow.setOnCenteredPositionChangedListener(null);
+        ViewPreInflater inflater = ViewPreInflater.getInstance();
+        Log.d(TAG, "Card inflations warm " + inflater.getWarmCount() + ", cold " + inflater.getColdCount());
     }
 
     @Override
@@ -81,25 +167,38 @@ public class CoverFlowFragment extends Fragment implements GalleryRecyclerView.O
     }
 
     private void openDetailsForCard(final int imageId, final String title) {
-        Palette.generateAsync(BitmapFactory.decodeResource(getResources(), imageId),
-                new Palette.PaletteAsyncListener() {
-                    @Override
-                    public void onGenerated(Palette palette) {
-                        Palette.Swatch vibrant =
-                                palette.getVibrantSwatch();
-                        if (vibrant != null) {
-                            startDetailsActivity(imageId, title, vibrant.getTitleTextColor(), vibrant.getRgb());
-                        }
-                    }
-                });
+        final long tapUptime = SystemClock.uptimeMillis();
+        //Details show the image of the card instead of decoding it again
+        BitmapHandoff.getInstance().publish(imageId, mPressedImageView);
+        //Palette is usually ready, it is warmed when the card is bound
+        PaletteCache paletteCache = PaletteCache.getInstance();
+        if (mPaletteListener != null) paletteCache.cancel(mPaletteListener);
+        mPaletteListener = new PaletteCache.OnPaletteReadyListener() {
+            @Override
+            public void onPaletteReady(int id, Palette palette) {
+                mPaletteListener = null;
+                Palette.Swatch vibrant =
+                        palette != null ? palette.getVibrantSwatch() : null;
+                if (vibrant != null) {
+                    startDetailsActivity(imageId, title, vibrant.getTitleTextColor(), vibrant.getRgb(), tapUptime);
+                } else {
+                    //Image has no colors to take, details are shown in the app colors
+                    startDetailsActivity(imageId, title, Color.WHITE,
+                            getResources().getColor(R.color.primary_dark), tapUptime);
+                }
+            }
+        };
+        paletteCache.get(getActivity(), imageId, mPaletteListener);
     }
 
-    private void startDetailsActivity(int imageId, String title, int titleColor, int titleBkgColor) {
+    private void startDetailsActivity(int imageId, String title, int titleColor, int titleBkgColor,
+                                      long tapUptime) {
         Intent intent = new Intent(getActivity(), DetailsActivity.class);
         intent.putExtra(DetailsActivity.IMAGE_RESOURCE_ID, imageId);
         intent.putExtra(DetailsActivity.CARD_TITLE, title);
         intent.putExtra(DetailsActivity.TITLE_TEXT_COLOR, titleColor);
         intent.putExtra(DetailsActivity.TITLE_BKG_COLOR, titleBkgColor);
+        intent.putExtra(DetailsActivity.TAP_UPTIME, tapUptime);
         String transitionName = getString(R.string.transition_image);
         ActivityOptionsCompat options =
                 ActivityOptionsCompat.makeSceneTransitionAnimation(getActivity(),
@@ -111,7 +210,9 @@ public class CoverFlowFragment extends Fragment implements GalleryRecyclerView.O
 
     @Override
     public void onItemClick(View view, int position) {
-        mPressedImageView = (ImageView) view.findViewById(R.id.info_image);
+        //Flat card is the image itself
+        View image = view.findViewById(R.id.info_image);
+        mPressedImageView = image != null ? image : view;
         openDetailsForCard(images[position % 5], mDataSet[position]);
     }
 
@@ -127,110 +228,4 @@ public class CoverFlowFragment extends Fragment implements GalleryRecyclerView.O
         mCoverFlowCount.setText(String.format("%d / %d", newCenteredPosition + 1,
                 mCoverFlow.getAdapter().getItemCount()));
     }
-
-    public static interface IViewHolderListener {
-        void onFirstButtonClick(int position);
-
-        void onSecondButtonClick(int position);
-    }
-
-    public class MyAdapter extends RecyclerView.Adapter<MyAdapter.ViewHolder> {
-
-        // Create new views (invoked by the layout manager)
-        @Override
-        public MyAdapter.ViewHolder onCreateViewHolder(ViewGroup parent,
-                                                       int viewType) {
-            // create a new view
-            CardView v = (CardView) LayoutInflater.from(parent.getContext())
-                    .inflate(R.layout.item_coverflow_view, parent, false);
-            // set the view's size, margins, paddings and layout parameters
-            //noinspection UnnecessaryLocalVariable
-            ViewHolder holder = new ViewHolder(v, new IViewHolderListener() {
-                @Override
-                public void onFirstButtonClick(int position) {
-                    Log.d(TAG, "First button clicked for position: " + position);
-                    if (position > 0)
-                        mCoverFlow.smoothScrollToPosition(position - 1);
-                    else
-                        mCoverFlow.smoothScrollToPosition(mDataSet.length - 1);
-                }
-
-                @Override
-                public void onSecondButtonClick(int position) {
-                    Log.d(TAG, "Second button clicked for position: " + position);
-                    if (position < mDataSet.length - 1)
-                        mCoverFlow.smoothScrollToPosition(position + 1);
-                    else
-                        mCoverFlow.smoothScrollToPosition(0);
-                }
-            });
-            return holder;
-        }
-
-        // Replace the contents of a view (invoked by the layout manager)
-        @Override
-        public void onBindViewHolder(ViewHolder holder, int position) {
-            // - get element from your dataset at this position
-            // - replace the contents of the view with that element
-            holder.setPosition(position);
-            holder.titleText.setText(mDataSet[position]);
-            holder.button1.setText(getText(R.string.description_prev));
-            holder.button2.setText(getText(R.string.description_next));
-            Glide.with(CoverFlowFragment.this)
-                    .load(images[position % 5])
-                    .fitCenter()
-                    .into(holder.image);
-        }
-
-        // Return the size of your dataset (invoked by the layout manager)
-        @Override
-        public int getItemCount() {
-            return mDataSet.length;
-        }
-
-        // Provide a reference to the views for each data item
-        // Complex data items may need more than one view per item, and
-        // you provide access to all the views for a data item in a view holder
-        public class ViewHolder extends GalleryViewHolder implements View.OnClickListener {
-            public TextView titleText;
-            public Button button1;
-            public Button button2;
-            public ImageView image;
-            // each data item is just a string in this case
-            public CardView cardView;
-            private IViewHolderListener mListener;
-            private int mPosition;
-
-            public ViewHolder(View v, IViewHolderListener listener) {
-                super(v, mCoverFlow);
-                cardView = (CardView) v.findViewById(R.id.card_view);
-                titleText = (TextView) v.findViewById(R.id.info_text);
-                button1 = (Button) v.findViewById(R.id.card_button_1);
-                button1.setTextColor(getResources().getColor(R.color.primary_dark));
-                button2 = (Button) v.findViewById(R.id.card_button_2);
-                button2.setTextColor(getResources().getColor(R.color.primary));
-                image = (ImageView) v.findViewById(R.id.info_image);
-
-                mListener = listener;
-                button1.setOnClickListener(this);
-                button2.setOnClickListener(this);
-            }
-
-            @Override
-            public void onClick(View v) {
-                switch (v.getId()) {
-                    case R.id.card_button_1:
-                        mListener.onFirstButtonClick(mPosition);
-                        break;
-                    case R.id.card_button_2:
-                        mListener.onSecondButtonClick(mPosition);
-                        break;
-                }
-            }
-
-            public void setPosition(int position) {
-                mPosition = position;
-            }
-        }
-    }
 }
@@ -2,9 +2,13 @@ package com.ap.androidltest.fragment;
 
 
 import android.app.Fragment;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.v4.app.ActivityCompat;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.Toolbar;
 import android.util.Log;
@@ -16,6 +20,8 @@ import android.widget.FrameLayout;
 import android.widget.ImageView;
 
 import com.ap.androidltest.R;
+import com.ap.androidltest.util.BitmapDecoder;
+import com.ap.androidltest.util.BitmapHandoff;
 import com.ap.androidltest.util.UIUtils;
 import com.ap.androidltest.widget.ObservableScrollView;
 
@@ -25,6 +31,9 @@ import com.ap.androidltest.widget.ObservableScrollView;
  */
 public class DetailsFragment extends Fragment implements ObservableScrollView.Callbacks {
 
+    private static final String TAG = DetailsFragment.class.getSimpleName();
+    /* Enter transition waits for the hero image at most this long */
+    private static final long HERO_IMAGE_TIMEOUT_MS = 300;
     private ObservableScrollView mScrollView;
     private int mPhotoHeightPixels, mHeaderHeightPixels, mAddButtonHeightPixels;
     //    private LinearLayout mHeaderBox;
@@ -44,13 +53,49 @@ public class DetailsFragment extends Fragment implements ObservableScrollView.Ca
     private String mCardTitle;
     private Toolbar mToolbar;
     private int mTitleTextColor, mTitleBackgroundColor;
+    private ImageView mImage;
+    private Bitmap mHeroBitmap;
+    /* Hero bitmap is decoded for the hero view, not the smaller one handed over by the card */
+    private boolean mHeroBitmapDecoded;
+    private HeroImageTask mHeroImageTask;
+    /* Uptime of the tap which opened the details, 0 when it is already measured */
+    private long mTapUptime;
+    /* Time from the tap to the first frame of the details, -1 until it is drawn */
+    private long mTapToFirstFrameMs = -1;
+    private boolean mEnterTransitionStarted;
+    private final Handler mHandler = new Handler();
+    private final Runnable mEnterTransitionTimeout = new Runnable() {
+        @Override
+        public void run() {
+            Log.d(TAG, "Hero image is not ready in " + HERO_IMAGE_TIMEOUT_MS + " ms");
+            startEnterTransition();
+        }
+    };
+    /* Copy of the tapped card image, which can land after the details are created */
+    private final BitmapHandoff.OnBitmapReadyListener mHandoffListener = new BitmapHandoff.OnBitmapReadyListener() {
+        @Override
+        public void onBitmapReady(int imageId, Bitmap bitmap) {
+            //Decoded image is sharper, it is not replaced by the card one
+            if (bitmap == null || mHeroBitmapDecoded) return;
+            mHeroBitmap = bitmap;
+            if (mImage == null) return;
+            mImage.setImageBitmap(bitmap);
+            startEnterTransition();
+        }
+    };
 
     public DetailsFragment() {
         // Required empty public constructor
     }
 
-    public static DetailsFragment getInstance(int imageId, String cardTitle, int titleColor, int bkgColor) {
+    /**
+     * @param tapUptime {@link SystemClock#uptimeMillis()} of the tap which opened the details,
+     *                  0 if it is unknown
+     */
+    public static DetailsFragment getInstance(int imageId, String cardTitle, int titleColor, int bkgColor,
+                                              long tapUptime) {
         DetailsFragment df = new DetailsFragment();
+        df.mTapUptime = tapUptime;
         df.mImageId = imageId;
         df.mCardTitle = cardTitle;
         df.mTitleTextColor = titleColor;
@@ -80,14 +125,24 @@ public class DetailsFragment extends Fragment implements ObservableScrollView.Ca
 
 //        mHeaderBox = (LinearLayout) view.findViewById(R.id.all_line);
         mAddButton = (ImageView) view.findViewById(R.id.all_add_button);
-        ImageView image = (ImageView) view.findViewById(R.id.all_image);
+        mImage = (ImageView) view.findViewById(R.id.all_image);
         mImageContainer = (FrameLayout) view.findViewById(R.id.all_image_container);
 //        TextView text = (TextView) view.findViewById(R.id.all_text);
 //        TextView title = (TextView) view.findViewById(R.id.all_title);
         mDetails = (FrameLayout) view.findViewById(R.id.all_details);
 
-        Bitmap bm = BitmapFactory.decodeResource(getResources(), mImageId);
-        image.setImageBitmap(bm);
+        //Tapped card hands its image over, the transition doesn't wait for the decode then
+        if (mHeroBitmap == null) mHeroBitmap = BitmapHandoff.getInstance().peek(mImageId);
+        if (mHeroBitmap != null) {
+            mImage.setImageBitmap(mHeroBitmap);
+            startEnterTransition();
+            //Card image is smaller than the hero, the sharp one replaces it once decoded
+            if (!mHeroBitmapDecoded && isSmallerThanHero(mHeroBitmap)) loadHeroImage(false);
+        } else {
+            loadHeroImage(true);
+            //Card image is still being copied, whichever image is ready first is shown
+            BitmapHandoff.getInstance().get(mImageId, mHandoffListener);
+        }
 //        title.setText(getString(R.string.all_title) + ": " + mCardTitle);
         mToolbar.setTitle(getString(R.string.all_title) + ": " + mCardTitle);
         mToolbar.setSubtitle(getString(R.string.all_subtitle));
@@ -131,9 +186,21 @@ public class DetailsFragment extends Fragment implements ObservableScrollView.Ca
         mToolbar.setNavigationOnClickListener(null);
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mHandler.removeCallbacks(mEnterTransitionTimeout);
+        BitmapHandoff.getInstance().cancel(mHandoffListener);
+        mImage = null;
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
+        if (mHeroImageTask != null) {
+            mHeroImageTask.cancel(false);
+            mHeroImageTask = null;
+        }
         if (mScrollView == null) {
             return;
         }
@@ -145,6 +212,70 @@ public class DetailsFragment extends Fragment implements ObservableScrollView.Ca
         }
     }
 
+    /*
+     * Hero image is decoded in the background no bigger than its view. When nothing is shown
+     * yet, the enter transition waits for it up to the timeout.
+     */
+    private void loadHeroImage(boolean postponeTransition) {
+        if (postponeTransition) mHandler.postDelayed(mEnterTransitionTimeout, HERO_IMAGE_TIMEOUT_MS);
+        if (mHeroImageTask != null) return;
+        mHeroImageTask = new HeroImageTask(getHeroWidth(), mPhotoHeightPixels);
+        mHeroImageTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, mImageId);
+    }
+
+    private void onHeroImageLoaded(Bitmap bitmap) {
+        mHeroImageTask = null;
+        //Handed over image stays if the decode failed
+        if (bitmap != null) {
+            mHeroBitmap = bitmap;
+            mHeroBitmapDecoded = true;
+        }
+        if (mImage == null) return;
+        if (bitmap != null) mImage.setImageBitmap(bitmap);
+        startEnterTransition();
+    }
+
+    private int getHeroWidth() {
+        return getResources().getDisplayMetrics().widthPixels;
+    }
+
+    private boolean isSmallerThanHero(Bitmap bitmap) {
+        return bitmap.getWidth() < getHeroWidth() || bitmap.getHeight() < mPhotoHeightPixels;
+    }
+
+    /*
+     * Transition starts with the frame which draws the image, it is the first frame of the
+     * details the user sees
+     */
+    private void startEnterTransition() {
+        mHandler.removeCallbacks(mEnterTransitionTimeout);
+        if (mEnterTransitionStarted || mImage == null) return;
+        mEnterTransitionStarted = true;
+        mImage.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (mImage != null) mImage.getViewTreeObserver().removeOnPreDrawListener(this);
+                if (getActivity() != null) ActivityCompat.startPostponedEnterTransition(getActivity());
+                if (mTapUptime > 0) {
+                    mTapToFirstFrameMs = SystemClock.uptimeMillis() - mTapUptime;
+                    Log.d(TAG, "Tap to first details frame " + mTapToFirstFrameMs
+                            + " ms, hero image " + (mHeroBitmap != null ? "ready" : "pending"));
+                    mTapUptime = 0;
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Time from the tap which opened the details to their first frame. Call on the main thread.
+     *
+     * @return time in ms, -1 until the first frame is drawn or if the tap time is unknown
+     */
+    long getTapToFirstFrameMs() {
+        return mTapToFirstFrameMs;
+    }
+
     private void recomputePhotoAndScrollingMetrics() {
         ViewGroup.LayoutParams lp;
         lp = mImageContainer.getLayoutParams();
@@ -188,5 +319,27 @@ public class DetailsFragment extends Fragment implements ObservableScrollView.Ca
         mImageContainer.setTranslationY(scrollY * 0.5f);
     }
 
+    private class HeroImageTask extends AsyncTask<Integer, Void, Bitmap> {
+
+        private final Resources mResources = getResources();
+        private final int mWidth;
+        private final int mHeight;
+
+        HeroImageTask(int width, int height) {
+            mWidth = width;
+            mHeight = height;
+        }
+
+        @Override
+        protected Bitmap doInBackground(Integer... params) {
+            return BitmapDecoder.decodeSampledResource(mResources, params[0], mWidth, mHeight, null);
+        }
+
+        @Override
+        protected void onPostExecute(Bitmap bitmap) {
+            onHeroImageLoaded(bitmap);
+        }
+    }
+
 
 }
@@ -0,0 +1,54 @@
+package com.ap.androidltest.util;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+/**
+ * Decoding of the image resources no bigger than the views which show them.
+ */
+public class BitmapDecoder {
+
+    private BitmapDecoder() {
+    }
+
+    /**
+     * Largest power of two sample size which keeps the image at least as big as required in
+     * both dimensions, so it can still be cropped to the required size
+     *
+     * @param width     image width
+     * @param height    image height
+     * @param reqWidth  required width
+     * @param reqHeight required height
+     * @return sample size for {@link BitmapFactory.Options#inSampleSize}
+     */
+    public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) return sampleSize;
+        while (width / (sampleSize * 2) >= reqWidth && height / (sampleSize * 2) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Decode the image resource sampled down to the required size. Can be called on any thread.
+     *
+     * @param resources resources of the image
+     * @param imageId   image resource id
+     * @param reqWidth  required width, 0 to decode in full size
+     * @param reqHeight required height, 0 to decode in full size
+     * @param config    bitmap config, null for the default one
+     * @return bitmap or null if the image cannot be decoded
+     */
+    public static Bitmap decodeSampledResource(Resources resources, int imageId, int reqWidth, int reqHeight,
+                                               Bitmap.Config config) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, imageId, options);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+        if (config != null) options.inPreferredConfig = config;
+        return BitmapFactory.decodeResource(resources, imageId, options);
+    }
+}
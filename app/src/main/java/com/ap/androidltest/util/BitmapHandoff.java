@@ -0,0 +1,172 @@
+package com.ap.androidltest.util;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.TransitionDrawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.SparseArray;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.ap.androidltest.widget.GalleryCardView;
+import com.bumptech.glide.load.resource.bitmap.GlideBitmapDrawable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Hands the decoded image of a tapped card over to the details screen of the same process, so
+ * the details do not decode it again. The card bitmap belongs to Glide and may be reused for
+ * another image once the card shows something else, so it is copied on a background thread
+ * and only the copy is ever handed out. Listeners are called on the main thread. Cache is
+ * bounded by bytes, the details decode the image themselves when it is evicted.
+ */
+public class BitmapHandoff {
+
+    private static final String TAG = BitmapHandoff.class.getSimpleName();
+    /* Part of the heap the handed over bitmaps can take */
+    private static final int MEMORY_FRACTION = 16;
+    private static BitmapHandoff sInstance;
+    private final LruCache<Integer, Bitmap> mBitmaps;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, TAG);
+        }
+    });
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    /* Listeners of the images being copied, by image id. Main thread only. */
+    private final SparseArray<List<OnBitmapReadyListener>> mPending = new SparseArray<>();
+
+    private BitmapHandoff() {
+        int maxBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+        mBitmaps = new LruCache<Integer, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Integer key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    public static synchronized BitmapHandoff getInstance() {
+        if (sInstance == null) sInstance = new BitmapHandoff();
+        return sInstance;
+    }
+
+    /**
+     * Publish the image shown by the card view. Call on the main thread, it only takes the
+     * bitmap, the copy is made in the background.
+     *
+     * @param imageId image resource id
+     * @param view    ImageView or {@link GalleryCardView} of the card
+     * @return true if the image was published
+     */
+    public boolean publish(final int imageId, View view) {
+        Drawable drawable = null;
+        if (view instanceof ImageView) drawable = ((ImageView) view).getDrawable();
+        else if (view instanceof GalleryCardView) drawable = ((GalleryCardView) view).getImageDrawable();
+        final Bitmap bitmap = getBitmap(drawable);
+        if (bitmap == null || bitmap.isRecycled()) return false;
+        if (mPending.get(imageId) != null) return true;
+        mPending.put(imageId, new ArrayList<OnBitmapReadyListener>(1));
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap copy = null;
+                try {
+                    copy = bitmap.copy(bitmap.getConfig() != null ? bitmap.getConfig() : Bitmap.Config.ARGB_8888, false);
+                } catch (OutOfMemoryError e) {
+                    Log.w(TAG, "Cannot copy image " + imageId, e);
+                }
+                final Bitmap result = copy;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onCopied(imageId, result);
+                    }
+                });
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Copy of the image published for the details. Call on the main thread.
+     *
+     * @param imageId image resource id
+     * @return bitmap or null if it was not published, is still being copied or was evicted
+     */
+    public Bitmap peek(int imageId) {
+        return mBitmaps.get(imageId);
+    }
+
+    /**
+     * Get the copy of the published image, right away when it is ready. Call on the main thread.
+     *
+     * @param imageId  image resource id
+     * @param listener listener which gets the copy on the main thread, or null if the image was
+     *                 not published, was evicted or could not be copied
+     */
+    public void get(int imageId, OnBitmapReadyListener listener) {
+        Bitmap bitmap = mBitmaps.get(imageId);
+        List<OnBitmapReadyListener> listeners = mPending.get(imageId);
+        if (bitmap == null && listeners != null) listeners.add(listener);
+        else listener.onBitmapReady(imageId, bitmap);
+    }
+
+    /**
+     * Drop the listener, for example when the screen which waits for an image is closed
+     *
+     * @param listener listener given to {@link #get(int, OnBitmapReadyListener)}
+     */
+    public void cancel(OnBitmapReadyListener listener) {
+        for (int i = 0; i < mPending.size(); i++) {
+            mPending.valueAt(i).remove(listener);
+        }
+    }
+
+    private void onCopied(int imageId, Bitmap bitmap) {
+        List<OnBitmapReadyListener> listeners = mPending.get(imageId);
+        mPending.remove(imageId);
+        if (bitmap != null) mBitmaps.put(imageId, bitmap);
+        if (listeners == null) return;
+        for (OnBitmapReadyListener listener : listeners) {
+            listener.onBitmapReady(imageId, bitmap);
+        }
+    }
+
+    /*
+     * Glide shows its own drawables, cross faded ones are wrapped in a transition
+     */
+    private static Bitmap getBitmap(Drawable drawable) {
+        if (drawable instanceof TransitionDrawable) {
+            TransitionDrawable transition = (TransitionDrawable) drawable;
+            return getBitmap(transition.getDrawable(transition.getNumberOfLayers() - 1));
+        }
+        if (drawable instanceof GlideBitmapDrawable) return ((GlideBitmapDrawable) drawable).getBitmap();
+        if (drawable instanceof BitmapDrawable) return ((BitmapDrawable) drawable).getBitmap();
+        return null;
+    }
+
+    public static interface OnBitmapReadyListener {
+        /**
+         * @param imageId image resource id
+         * @param bitmap  copy of the card image, or null if there is none
+         */
+        void onBitmapReady(int imageId, Bitmap bitmap);
+    }
+}
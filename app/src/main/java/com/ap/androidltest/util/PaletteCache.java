@@ -0,0 +1,150 @@
+package com.ap.androidltest.util;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.v7.graphics.Palette;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Palettes of the image resources, generated on a background thread from a downsampled
+ * decode and kept in a LRU by image id. Cards warm the palette of their image when they are
+ * bound, so a tap usually finds it ready. Listeners are called on the main thread.
+ */
+public class PaletteCache {
+
+    private static final String TAG = PaletteCache.class.getSimpleName();
+    /* Palette needs only the main colors, so the image is decoded to about this size */
+    private static final int DECODE_SIZE_PX = 100;
+    private static final int MAX_PALETTES = 32;
+    private static PaletteCache sInstance;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, TAG);
+        }
+    });
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<Integer, Palette> mPalettes = new LruCache<>(MAX_PALETTES);
+    /* Listeners of the palettes being generated, by image id. Main thread only. */
+    private final SparseArray<List<OnPaletteReadyListener>> mPending = new SparseArray<>();
+
+    public static synchronized PaletteCache getInstance() {
+        if (sInstance == null) sInstance = new PaletteCache();
+        return sInstance;
+    }
+
+    /**
+     * Generated palette of the image
+     *
+     * @param imageId image resource id
+     * @return palette or null if it is not ready
+     */
+    public Palette peek(int imageId) {
+        return mPalettes.get(imageId);
+    }
+
+    /**
+     * Start generating the palette of the image unless it is ready or being generated. Call on
+     * the main thread.
+     *
+     * @param context context to decode the image
+     * @param imageId image resource id
+     */
+    public void warm(Context context, int imageId) {
+        if (mPalettes.get(imageId) != null || mPending.get(imageId) != null) return;
+        mPending.put(imageId, new ArrayList<OnPaletteReadyListener>(1));
+        generate(context.getApplicationContext().getResources(), imageId);
+    }
+
+    /**
+     * Get the palette of the image, right away when it is ready. Call on the main thread.
+     *
+     * @param context  context to decode the image
+     * @param imageId  image resource id
+     * @param listener listener which gets the palette on the main thread, or null if the palette
+     *                 could not be generated
+     */
+    public void get(Context context, int imageId, OnPaletteReadyListener listener) {
+        Palette palette = mPalettes.get(imageId);
+        if (palette != null) {
+            listener.onPaletteReady(imageId, palette);
+            return;
+        }
+        warm(context, imageId);
+        mPending.get(imageId).add(listener);
+    }
+
+    /**
+     * Drop the listener, for example when the screen which waits for a palette is closed
+     *
+     * @param listener listener given to {@link #get(Context, int, OnPaletteReadyListener)}
+     */
+    public void cancel(OnPaletteReadyListener listener) {
+        for (int i = 0; i < mPending.size(); i++) {
+            mPending.valueAt(i).remove(listener);
+        }
+    }
+
+    private void generate(final Resources resources, final int imageId) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Palette palette = null;
+                try {
+                    Bitmap bitmap = BitmapDecoder.decodeSampledResource(resources, imageId,
+                            DECODE_SIZE_PX, DECODE_SIZE_PX, null);
+                    if (bitmap != null) {
+                        palette = Palette.generate(bitmap);
+                        bitmap.recycle();
+                    }
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Cannot generate palette of image " + imageId, e);
+                }
+                final Palette result = palette;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onGenerated(imageId, result);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onGenerated(int imageId, Palette palette) {
+        List<OnPaletteReadyListener> listeners = mPending.get(imageId);
+        mPending.remove(imageId);
+        //Failed image is not cached, it is tried again on the next request
+        if (palette != null) mPalettes.put(imageId, palette);
+        if (listeners == null) return;
+        for (OnPaletteReadyListener listener : listeners) {
+            listener.onPaletteReady(imageId, palette);
+        }
+    }
+
+    public static interface OnPaletteReadyListener {
+        /**
+         * @param imageId image resource id
+         * @param palette palette of the image, or null if it could not be generated
+         */
+        void onPaletteReady(int imageId, Palette palette);
+    }
+}
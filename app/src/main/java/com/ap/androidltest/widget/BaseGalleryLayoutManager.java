@@ -1,12 +1,19 @@
 package com.ap.androidltest.widget;
 
+import android.content.Context;
 import android.os.Build;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
+import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.animation.AnimationUtils;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+import android.view.animation.LinearInterpolator;
 
 /**
  * Created by AP on 05/12/14.
@@ -23,22 +30,88 @@ public abstract class BaseGalleryLayoutManager extends RecyclerView.LayoutManage
 //    private int mFirstItemOffset = NOT_SET, mLastItemOffset = NOT_SET;
     protected int mPendingCenteredPosition = NOT_SET;
     private static final String TAG = BaseGalleryLayoutManager.class.getSimpleName();
+    /* Number of items animated by smooth scroll after an instant jump to the distant target */
+    private static final int FAR_JUMP_ITEMS = 3;
+    /* Smooth scroll speed */
+    private static final float MILLISECONDS_PER_INCH = 50f;
+    public static final int DEFAULT_PREFETCH_ITEM_COUNT = 2;
+    /* Limits of the extra columns laid out off the screen on each side */
+    public static final int DEFAULT_MIN_OVERSCAN = 0;
+    public static final int DEFAULT_MAX_OVERSCAN = 3;
+    /* Overscan covers the columns which would scroll into the screen during this time */
+    private static final int OVERSCAN_LOOKAHEAD_MS = 100;
+    /* Scroll steps further apart than this don't measure the velocity */
+    private static final int VELOCITY_TRACKING_TIMEOUT_MS = 100;
+    /* Number of samples in the transform lookup table, odd so the center has its own sample */
+    private static final int TRANSFORM_TABLE_SIZE = 257;
+    /* Changes smaller than these values are not applied to the views */
+    private static final float SCALE_EPSILON = 0.001f;
+    private static final float ALPHA_EPSILON = 0.002f;
+    private static final float Z_EPSILON = 0.01f;
+    private static final float ROTATION_EPSILON = 0.05f;
+    private static final float TRANSLATION_EPSILON = 0.5f;
     /* First (top-left) position visible at any point */
     protected int mFirstVisiblePosition = 0;
-    /* Consistent size applied to all child views */
+    /* Size of the first item, width is the estimate for the items which were not measured yet */
     protected int mDecoratedChildWidth;
     protected int mDecoratedChildHeight;
+    /* Measured size of the first child, without the decoration insets */
+    protected int mItemViewWidth;
+    protected int mItemViewHeight;
+    /* Decorated widths of all the items, to find offsets and positions without linear scans */
+    protected final ItemWidthIndex mWidthIndex = new ItemWidthIndex();
     /* Metrics for the visible window of our data */
     protected int mVisibleColumnCount;
+    /* Columns which fit on the screen, the window adds the overscan on both sides */
+    protected int mScreenColumnCount;
+    protected int mOverscanColumns = DEFAULT_MIN_OVERSCAN;
+    private int mMinOverscanColumns = DEFAULT_MIN_OVERSCAN;
+    private int mMaxOverscanColumns = DEFAULT_MAX_OVERSCAN;
+    private float mScrollVelocity;
+    private long mLastScrollTime;
     protected boolean mShowItemsInLoop;
-    private float mMinScale = 0.8f;
-    private float mMinAlpha = 1.0f;
-    private float mMaxZ = 0.0f;
-    private int mScaleStartDivider = 4;
+    /* Direction of the last scroll, used to prefetch upcoming items */
+    protected int mScrollDirection = DIRECTION_NONE;
+    /* Recycler of the last layout or scroll pass, used to prefetch views between frames */
+    protected RecyclerView.Recycler mRecycler;
+    private int mPrefetchItemCount = DEFAULT_PREFETCH_ITEM_COUNT;
+    private int[] mPrefetchedPositions = new int[DEFAULT_PREFETCH_ITEM_COUNT];
+    private int mPrefetchedCount;
+    private int mPrefetchHitCount;
+    private int mPrefetchMissCount;
+    private final LinearItemTransformer mDefaultTransformer = new LinearItemTransformer();
+    private ItemTransformer mItemTransformer = mDefaultTransformer;
+    private ViewLodPolicy mViewLodPolicy;
+    /* Holders could be out of the full tier since a policy was set */
+    private boolean mLodTiersApplied;
+    /* Transform sampled by the signed distance from the center, in half screen widths */
+    private final float[] mScaleTable = new float[TRANSFORM_TABLE_SIZE];
+    private final float[] mAlphaTable = new float[TRANSFORM_TABLE_SIZE];
+    private final float[] mZTable = new float[TRANSFORM_TABLE_SIZE];
+    private final float[] mRotationYTable = new float[TRANSFORM_TABLE_SIZE];
+    private final float[] mTranslationXTable = new float[TRANSFORM_TABLE_SIZE];
+    private float mTableSamplesPerDistance;
+    private boolean mTransformTableDirty = true;
+    private int mAppliedPropertyCount;
+    private int mSkippedPropertyCount;
+    /* Children measured in an older generation are measured again, see invalidateMeasureCache */
+    private int mMeasureGeneration = 1;
+    /* Space available to the children when the measure cache was filled */
+    private int mMeasureCacheSpaceWidth;
+    private int mMeasureCacheSpaceHeight;
+    private int mMeasureCacheHitCount;
+    private int mMeasureCacheMissCount;
 
     public abstract int getOffsetToItem(int position);
 
-    protected abstract int getProperPosition(int position);
+    /**
+     * Map the virtual position to the adapter position. In loop mode virtual positions continue
+     * the items in both directions.
+     *
+     * @param virtualPosition position, not necessary in the data set range
+     * @return adapter position
+     */
+    protected abstract int getProperPosition(long virtualPosition);
 
     @Override
     public Parcelable onSaveInstanceState() {
@@ -57,28 +130,338 @@ public abstract class BaseGalleryLayoutManager extends RecyclerView.LayoutManage
     public void onAdapterChanged(RecyclerView.Adapter oldAdapter, RecyclerView.Adapter newAdapter) {
         //Completely scrap the existing layout
         removeAllViews();
+        mWidthIndex.clear();
+        invalidateMeasureCache();
+    }
+
+    @Override
+    public void onItemsChanged(RecyclerView recyclerView) {
+        //Any item could change its width
+        mWidthIndex.clear();
     }
 
     /*
      * Rather than continuously checking how many views we can fit
      * based on scroll offsets, we simplify the math by computing the
      * visible grid as what will initially fit on screen, plus one.
+     * Grid is sized by the narrowest known item, so any run of items
+     * of that length covers the screen. Overscan columns are added on
+     * both sides of the screen.
      */
     protected void updateWindowSizing() {
-        mVisibleColumnCount = (getHorizontalSpace() / mDecoratedChildWidth) + 1;
-        if (getHorizontalSpace() % mDecoratedChildWidth > 0) {
-            mVisibleColumnCount++;
+        int minWidth = mWidthIndex.getCount() > 0 ? mWidthIndex.getMinWidth() : mDecoratedChildWidth;
+        if (minWidth <= 0) minWidth = 1;
+        mScreenColumnCount = (getHorizontalSpace() / minWidth) + 1;
+        if (getHorizontalSpace() % minWidth > 0) {
+            mScreenColumnCount++;
         }
+        mVisibleColumnCount = mScreenColumnCount + 2 * mOverscanColumns;
 
         //Allow minimum value for small data sets
+        if (mScreenColumnCount > getTotalColumnCount()) {
+            mScreenColumnCount = getTotalColumnCount();
+        }
         if (mVisibleColumnCount > getTotalColumnCount()) {
             mVisibleColumnCount = getTotalColumnCount();
         }
     }
 
+    /**
+     * Set how many extra columns could be laid out off the screen on each side. The overscan
+     * grows from the minimum up to the maximum with the scroll velocity, so fast flings find
+     * their columns already laid out, and it goes back to the minimum once the scroll stops.
+     *
+     * @param min columns kept at rest
+     * @param max columns laid out during the fastest flings
+     */
+    public void setOverscanLimits(int min, int max) {
+        if (min < 0) min = 0;
+        if (max < min) max = min;
+        mMinOverscanColumns = min;
+        mMaxOverscanColumns = max;
+        setScrollVelocity(mScrollVelocity);
+    }
+
+    public int getMinOverscan() {
+        return mMinOverscanColumns;
+    }
+
+    public int getMaxOverscan() {
+        return mMaxOverscanColumns;
+    }
+
+    /**
+     * Number of extra columns currently laid out off the screen on each side
+     *
+     * @return overscan columns
+     */
+    public int getOverscan() {
+        return mOverscanColumns;
+    }
+
+    /**
+     * Update the overscan for the scroll velocity. Bigger window is filled on the next scroll
+     * step, smaller one is trimmed there as well, or by a layout pass when the scroll stopped.
+     *
+     * @param velocity scroll velocity in pixels per second, 0 when the scroll stopped
+     */
+    public void setScrollVelocity(float velocity) {
+        mScrollVelocity = Math.abs(velocity);
+        int overscan = mMinOverscanColumns;
+        if (mDecoratedChildWidth > 0) {
+            int columns = (int) Math.ceil(mScrollVelocity * OVERSCAN_LOOKAHEAD_MS / 1000f / mDecoratedChildWidth);
+            overscan = Math.max(mMinOverscanColumns, Math.min(columns, mMaxOverscanColumns));
+        }
+        if (overscan == mOverscanColumns) return;
+        final boolean shrunk = overscan < mOverscanColumns;
+        mOverscanColumns = overscan;
+        if (getChildCount() == 0) return;
+        updateWindowSizing();
+        if (shrunk && mScrollVelocity == 0) requestLayout();
+    }
+
+    /**
+     * Number of columns in the window during the fastest flings, e.g. to size the view pool
+     *
+     * @return columns count
+     */
+    public int getMaxWindowColumnCount() {
+        return Math.min(mScreenColumnCount + 2 * mMaxOverscanColumns, getTotalColumnCount());
+    }
+
+    /**
+     * Send all the children to the recycler, so another gallery which shares the view pool
+     * could reuse them. Centered item is restored by the next layout.
+     */
+    void recycleAllChildren() {
+        if (mRecycler == null || getChildCount() == 0) return;
+        mPendingCenteredPosition = getCurrentCenteredPosition();
+        removeAndRecycleAllViews(mRecycler);
+    }
+
+    /**
+     * Measure the scroll velocity from the scroll steps, should be called on every step
+     *
+     * @param dx scrolled distance
+     */
+    protected void trackScrollVelocity(int dx) {
+        final long now = AnimationUtils.currentAnimationTimeMillis();
+        final long elapsed = now - mLastScrollTime;
+        mLastScrollTime = now;
+        //Several steps of one frame are not measured, neither is the first step after a pause
+        if (elapsed <= 0 || elapsed > VELOCITY_TRACKING_TIMEOUT_MS) return;
+        //Average with the previous value to smooth out the frame time jitter
+        setScrollVelocity((mScrollVelocity + Math.abs(dx) * 1000f / elapsed) / 2);
+    }
+
+    /*
+     * Position will be centered on the next layout pass
+     */
     @Override
-    public void smoothScrollToPosition(RecyclerView recyclerView, RecyclerView.State state, final int position) {
-        Log.e(TAG, "Method smoothScrollToPosition is not supported. Use smoothScrollBy");
+    public void scrollToPosition(int position) {
+        if (position < 0 || position >= getItemCount()) {
+            Log.e(TAG, "Cannot scroll to position " + position + ", item count is " + getItemCount());
+            return;
+        }
+        mPendingCenteredPosition = position;
+        requestLayout();
+    }
+
+    /*
+     * Distant targets are reached by an instant jump to a few items before the target and
+     * animation of the last stretch only, so items in between are never bound.
+     */
+    @Override
+    public void smoothScrollToPosition(final RecyclerView recyclerView, RecyclerView.State state, final int position) {
+        if (position < 0 || position >= getItemCount()) {
+            Log.e(TAG, "Cannot scroll to position " + position + ", item count is " + getItemCount());
+            return;
+        }
+
+        int distance = getPositionDistance(getCurrentCenteredPosition(), position);
+        if (Math.abs(distance) > FAR_JUMP_ITEMS) {
+            scrollToPosition(getProperPosition(position - Integer.signum(distance) * FAR_JUMP_ITEMS));
+            //Runnable is posted after the layout requested by the jump, so it will see new children
+            recyclerView.post(new Runnable() {
+                @Override
+                public void run() {
+                    startGallerySmoothScroll(recyclerView.getContext(), position);
+                }
+            });
+        } else {
+            startGallerySmoothScroll(recyclerView.getContext(), position);
+        }
+    }
+
+    /**
+     * Center the item at which a scroll by the given distance would end. Scroll is done by one
+     * animation which ends exactly on the center of that item.
+     *
+     * @param recyclerView RecyclerView which uses this layout manager
+     * @param distance     predicted scroll distance in pixels
+     * @param duration     duration of the animation
+     * @return false if there is nothing to scroll
+     */
+    public boolean snapToCenter(RecyclerView recyclerView, int distance, int duration) {
+        if (getChildCount() == 0 || mDecoratedChildWidth <= 0) return false;
+        final long centerOffset = getCenterVirtualOffset();
+        long target = getVirtualPositionAt(centerOffset + distance);
+        //Any fling should move at least to the next item in its direction
+        long targetCenter = getVirtualOffset(target) + getItemWidth(getProperPosition(target)) / 2;
+        if (distance > 0 && targetCenter < centerOffset) target++;
+        else if (distance < 0 && targetCenter > centerOffset) target--;
+        if (!isLoopLayout()) {
+            if (target < 0) target = 0;
+            else if (target > getItemCount() - 1) target = getItemCount() - 1;
+        }
+
+        int offset = clampToInt(getVirtualOffset(target) + getItemWidth(getProperPosition(target)) / 2 - centerOffset);
+        if (offset == 0) return false;
+
+        GallerySmoothScroller scroller = new GallerySmoothScroller(recyclerView.getContext());
+        scroller.setSnap(offset, duration);
+        scroller.setTargetPosition(getProperPosition(target));
+        startSmoothScroll(scroller);
+        return true;
+    }
+
+    private void startGallerySmoothScroll(Context context, int position) {
+        GallerySmoothScroller scroller = new GallerySmoothScroller(context);
+        scroller.setTargetPosition(position);
+        startSmoothScroll(scroller);
+    }
+
+    /**
+     * Set how many items in the scroll direction should be created and bound ahead of need
+     *
+     * @param count number of items, 0 disables prefetch
+     */
+    public void setPrefetchItemCount(int count) {
+        if (count < 0) count = 0;
+        mPrefetchItemCount = count;
+        mPrefetchedPositions = new int[count];
+        mPrefetchedCount = 0;
+    }
+
+    public int getPrefetchItemCount() {
+        return mPrefetchItemCount;
+    }
+
+    /**
+     * Number of views which were requested for a new column and had been prefetched before
+     *
+     * @return prefetch hits count
+     */
+    public int getPrefetchHitCount() {
+        return mPrefetchHitCount;
+    }
+
+    /**
+     * Number of views which were requested for a new column and had to be created or bound
+     * inside the frame
+     *
+     * @return prefetch misses count
+     */
+    public int getPrefetchMissCount() {
+        return mPrefetchMissCount;
+    }
+
+    public void resetPrefetchCounters() {
+        mPrefetchHitCount = 0;
+        mPrefetchMissCount = 0;
+    }
+
+    /**
+     * Create, bind and measure the next not yet prefetched item in the current scroll direction.
+     * The view is put into the recycler cache, so it is attached without binding once its
+     * column becomes visible. Should be called when the main thread has spare time.
+     *
+     * @return true if an item was prefetched and there could be more items to prefetch
+     */
+    boolean prefetchNextItem() {
+        if (mPrefetchItemCount == 0 || mRecycler == null || getChildCount() == 0
+                || mScrollDirection == DIRECTION_NONE) return false;
+        final boolean toEnd = mScrollDirection == DIRECTION_END;
+        final int edgePosition = getPosition(getChildAt(toEnd ? getChildCount() - 1 : 0));
+        for (int i = 1; i <= mPrefetchItemCount; i++) {
+            int position = edgePosition + (toEnd ? i : -i);
+            if (isLoopLayout()) position = getProperPosition((long) edgePosition + (toEnd ? i : -i));
+            else if (position < 0 || position >= getItemCount()) return false;
+            if (isPrefetched(position) || findViewByPosition(position) != null) continue;
+
+            View view = mRecycler.getViewForPosition(position);
+            measureItem(view, position);
+            mRecycler.recycleView(view);
+            addPrefetched(position);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the view for the column which came into the screen, counting prefetch hits and misses
+     *
+     * @param position adapter position
+     * @param recycler recycler of the current pass
+     * @return bound view
+     */
+    protected View obtainColumnView(int position, RecyclerView.Recycler recycler) {
+        if (mPrefetchItemCount > 0) {
+            if (removePrefetched(position)) mPrefetchHitCount++;
+            else mPrefetchMissCount++;
+        }
+        return recycler.getViewForPosition(position);
+    }
+
+    /**
+     * Forget prefetched positions, e.g. after the data set or layout change
+     */
+    protected void clearPrefetched() {
+        mPrefetchedCount = 0;
+    }
+
+    private boolean isPrefetched(int position) {
+        for (int i = 0; i < mPrefetchedCount; i++) {
+            if (mPrefetchedPositions[i] == position) return true;
+        }
+        return false;
+    }
+
+    private void addPrefetched(int position) {
+        if (mPrefetchedCount == mPrefetchedPositions.length) {
+            //Forget the oldest one, it is evicted from the recycler cache first too
+            System.arraycopy(mPrefetchedPositions, 1, mPrefetchedPositions, 0, mPrefetchedCount - 1);
+            mPrefetchedCount--;
+        }
+        mPrefetchedPositions[mPrefetchedCount++] = position;
+    }
+
+    private boolean removePrefetched(int position) {
+        for (int i = 0; i < mPrefetchedCount; i++) {
+            if (mPrefetchedPositions[i] == position) {
+                System.arraycopy(mPrefetchedPositions, i + 1, mPrefetchedPositions, i, mPrefetchedCount - i - 1);
+                mPrefetchedCount--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Number of items between two positions. In loop mode the shorter way around is used.
+     *
+     * @param from start position
+     * @param to   end position
+     * @return number of items, negative if the end position is before the start one
+     */
+    protected int getPositionDistance(int from, int to) {
+        int distance = to - from;
+        if (isLoopLayout()) {
+            int itemCount = getItemCount();
+            if (distance > itemCount / 2) distance -= itemCount;
+            else if (distance < -itemCount / 2) distance += itemCount;
+        }
+        return distance;
     }
 
     /*
@@ -107,11 +490,32 @@ public abstract class BaseGalleryLayoutManager extends RecyclerView.LayoutManage
      */
     @Override
     public RecyclerView.LayoutParams generateDefaultLayoutParams() {
-        return new RecyclerView.LayoutParams(
+        return new LayoutParams(
                 RecyclerView.LayoutParams.WRAP_CONTENT,
                 RecyclerView.LayoutParams.WRAP_CONTENT);
     }
 
+    @Override
+    public RecyclerView.LayoutParams generateLayoutParams(Context c, AttributeSet attrs) {
+        return new LayoutParams(c, attrs);
+    }
+
+    @Override
+    public RecyclerView.LayoutParams generateLayoutParams(ViewGroup.LayoutParams lp) {
+        if (lp instanceof RecyclerView.LayoutParams) {
+            return new LayoutParams((RecyclerView.LayoutParams) lp);
+        } else if (lp instanceof ViewGroup.MarginLayoutParams) {
+            return new LayoutParams((ViewGroup.MarginLayoutParams) lp);
+        } else {
+            return new LayoutParams(lp);
+        }
+    }
+
+    @Override
+    public boolean checkLayoutParams(RecyclerView.LayoutParams lp) {
+        return lp instanceof LayoutParams;
+    }
+
     /*
      * This is a helper method used by RecyclerView to determine
      * if a specific child view can be returned.
@@ -127,75 +531,481 @@ public abstract class BaseGalleryLayoutManager extends RecyclerView.LayoutManage
         return null;
     }
 
+    /**
+     * Returns position of the item which is crossing the center of the layout. It is found
+     * in the width index from the first child only.
+     *
+     * @return centered position
+     */
     public int getCurrentCenteredPosition() {
-        View child;
-        for (int i = 0; i < getChildCount(); i++) {
-            child = getChildAt(i);
-            if (getDecoratedRight(child) > getHorizontalSpace() / 2) {
-                return positionOfIndex(i);
-            }
+        if (getChildCount() == 0 || mDecoratedChildWidth <= 0) {
+            if (mPendingCenteredPosition != NOT_SET) return mPendingCenteredPosition;
+            return 0;
+        }
+
+        long virtualPosition = getVirtualPositionAt(getCenterVirtualOffset());
+        if (virtualPosition < mFirstVisiblePosition) virtualPosition = mFirstVisiblePosition;
+        int position = getProperPosition(virtualPosition);
+        if (position >= getItemCount()) position = getItemCount() - 1;
+        return position;
+    }
+
+    /**
+     * Returns fractional centered position, e.g. 2.5 means that the center of the layout is
+     * exactly between items 2 and 3. Could be used to drive animations without touching views.
+     *
+     * @return centered position with the fraction of the scroll to the next item
+     */
+    public float getCenteredPositionFloat() {
+        if (getChildCount() == 0 || mDecoratedChildWidth <= 0) {
+            if (mPendingCenteredPosition != NOT_SET) return mPendingCenteredPosition;
+            return 0;
+        }
+
+        final long centerOffset = getCenterVirtualOffset();
+        long whole = getVirtualPositionAt(centerOffset);
+        //Fraction is found before the position is wrapped, so it keeps its precision for any position
+        float fraction = (float) (centerOffset - getVirtualOffset(whole))
+                / getItemWidth(getProperPosition(whole)) - 0.5f;
+        if (fraction < 0) {
+            whole--;
+            fraction += 1;
         }
+        float position = getProperPosition(whole) + fraction;
+        if (position < 0) position = 0;
+        else if (position > getItemCount() - 1) position = getItemCount() - 1;
+        return position;
+    }
+
+    /**
+     * Distance from the left edge of the first child, without any extra offsets applied by the
+     * layout manager, to the center of the layout
+     *
+     * @return distance in pixels
+     */
+    protected float getCenterDistance() {
+        final int center = getPaddingLeft() + getHorizontalSpace() / 2;
+        return center - (getDecoratedLeft(getChildAt(0)) - getChildOffset(0));
+    }
+
+    /**
+     * Virtual offset of the center of the layout, see {@link #getVirtualOffset(long)}
+     *
+     * @return offset in pixels
+     */
+    protected long getCenterVirtualOffset() {
+        return getVirtualOffset(mFirstVisiblePosition) + (long) getCenterDistance();
+    }
+
+    /**
+     * Distance from the start of the item 0 to the start of the item. Positions out of the data
+     * set range continue the items in loop, e.g. position -1 is the last item one loop before.
+     * Positions next to the data set range are wrapped without division.
+     *
+     * @param virtualPosition position, not necessary in the data set range
+     * @return offset in pixels
+     */
+    protected long getVirtualOffset(long virtualPosition) {
+        final int count = mWidthIndex.getCount();
+        if (count == 0) return virtualPosition * mDecoratedChildWidth;
+        long loops = 0;
+        long position = virtualPosition;
+        if (position >= count) {
+            loops = position < 2L * count ? 1 : position / count;
+        } else if (position < 0) {
+            loops = position >= -count ? -1 : floorDiv(position, count);
+        }
+        position -= loops * count;
+        return loops * mWidthIndex.getTotalWidth() + mWidthIndex.getOffset((int) position);
+    }
+
+    /**
+     * Virtual position of the item which covers the virtual offset, reverse of
+     * {@link #getVirtualOffset(long)}
+     *
+     * @param virtualOffset distance from the start of the item 0
+     * @return position, not necessary in the data set range
+     */
+    protected long getVirtualPositionAt(long virtualOffset) {
+        final int count = mWidthIndex.getCount();
+        final long totalWidth = mWidthIndex.getTotalWidth();
+        if (count == 0 || totalWidth <= 0) {
+            return floorDiv(virtualOffset, Math.max(1, mDecoratedChildWidth));
+        }
+        long loops = 0;
+        if (virtualOffset >= totalWidth) {
+            loops = virtualOffset < 2 * totalWidth ? 1 : virtualOffset / totalWidth;
+        } else if (virtualOffset < 0) {
+            loops = virtualOffset >= -totalWidth ? -1 : floorDiv(virtualOffset, totalWidth);
+        }
+        return loops * count + mWidthIndex.getPositionAt(virtualOffset - loops * totalWidth);
+    }
+
+    /**
+     * Total width of the items from one virtual position up to another one
+     *
+     * @param from first virtual position, included
+     * @param to   last virtual position, excluded
+     * @return width in pixels, negative if the last position is before the first one
+     */
+    protected int getColumnsWidth(long from, long to) {
+        return clampToInt(getVirtualOffset(to) - getVirtualOffset(from));
+    }
 
-        if (mPendingCenteredPosition != NOT_SET) return mPendingCenteredPosition;
+    private static long floorDiv(long x, long y) {
+        long result = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) result--;
+        return result;
+    }
+
+    protected static int clampToInt(long value) {
+        if (value > Integer.MAX_VALUE) return Integer.MAX_VALUE;
+        if (value < Integer.MIN_VALUE) return Integer.MIN_VALUE;
+        return (int) value;
+    }
+
+    /**
+     * Width of the item views as measured in the first layout, without the decoration insets.
+     * Content loaded for the items, e.g. images, can be requested in this size before the items
+     * are bound.
+     *
+     * @return width in pixels, 0 before the first layout
+     */
+    public int getItemViewWidth() {
+        return mItemViewWidth;
+    }
+
+    /**
+     * Height of the item views as measured in the first layout, without the decoration insets
+     *
+     * @return height in pixels, 0 before the first layout
+     */
+    public int getItemViewHeight() {
+        return mItemViewHeight;
+    }
+
+    /**
+     * Decorated width of the item, estimated if the item was not measured yet
+     *
+     * @param position adapter position
+     * @return width in pixels
+     */
+    protected int getItemWidth(int position) {
+        if (position < 0 || position >= mWidthIndex.getCount()) return mDecoratedChildWidth;
+        return mWidthIndex.getWidth(position);
+    }
+
+    /**
+     * Measure the child and remember its width in the width index. A recycled child is not
+     * measured again when nothing requested its layout since its last measure, and the width
+     * index already holds its width for the position.
+     *
+     * @param child    child view
+     * @param position adapter position of the child
+     * @return decorated width of the child
+     */
+    protected int measureItem(View child, int position) {
+        final boolean indexed = position >= 0 && position < mWidthIndex.getCount();
+        final LayoutParams lp = child.getLayoutParams() instanceof LayoutParams
+                ? (LayoutParams) child.getLayoutParams() : null;
+        if (lp != null && lp.mMeasureGeneration == mMeasureGeneration && !child.isLayoutRequested()
+                && indexed && mWidthIndex.getWidth(position) == getDecoratedMeasuredWidth(child)) {
+            mMeasureCacheHitCount++;
+            return mWidthIndex.getWidth(position);
+        }
+        measureChildWithMargins(child, 0, 0);
+        if (lp != null) lp.mMeasureGeneration = mMeasureGeneration;
+        mMeasureCacheMissCount++;
+        final int width = getDecoratedMeasuredWidth(child);
+        if (indexed) mWidthIndex.setWidth(position, width);
+        return width;
+    }
+
+    /**
+     * Forget measured sizes of the children, so every child is measured again. Should be called
+     * when the children could change their size, e.g. after the configuration or item
+     * decoration insets change.
+     */
+    public void invalidateMeasureCache() {
+        mMeasureGeneration++;
+    }
+
+    /**
+     * Invalidate measure cache if the space available to the children changed, e.g. because of
+     * rotation or new window insets applied as padding
+     */
+    protected void validateMeasureCache() {
+        final int spaceWidth = getHorizontalSpace();
+        final int spaceHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (spaceWidth != mMeasureCacheSpaceWidth || spaceHeight != mMeasureCacheSpaceHeight) {
+            invalidateMeasureCache();
+            mMeasureCacheSpaceWidth = spaceWidth;
+            mMeasureCacheSpaceHeight = spaceHeight;
+        }
+    }
+
+    /**
+     * Number of children which kept their measured size without a new measure
+     *
+     * @return measure cache hits count
+     */
+    public int getMeasureCacheHitCount() {
+        return mMeasureCacheHitCount;
+    }
+
+    /**
+     * Number of children which had to be measured
+     *
+     * @return measure cache misses count
+     */
+    public int getMeasureCacheMissCount() {
+        return mMeasureCacheMissCount;
+    }
+
+    public void resetMeasureCacheCounters() {
+        mMeasureCacheHitCount = 0;
+        mMeasureCacheMissCount = 0;
+    }
+
+    /**
+     * Extra horizontal offset applied to the child by the layout manager on top of its column
+     * position
+     *
+     * @param childIndex index of the child
+     * @return offset in pixels
+     */
+    protected int getChildOffset(int childIndex) {
         return 0;
     }
 
-    public void setMinimumScale(float minScale) {
-        if (minScale < 0) minScale = 0;
-        else if (minScale > 1.0f) minScale = 1.0f;
-        mMinScale = minScale;
+    /**
+     * Set the transformer which defines scale, alpha, z, rotation and translation of the items
+     * depending on their distance from the center. Transformer is sampled once, so it should
+     * be set again if its parameters are changed.
+     *
+     * @param transformer item transformer, or null to use the default linear one
+     */
+    public void setItemTransformer(ItemTransformer transformer) {
+        mItemTransformer = transformer != null ? transformer : mDefaultTransformer;
+        mTransformTableDirty = true;
         scaleAllItems();
     }
 
-    public void setMinimumAlpha(float minAlpha) {
-        if (minAlpha < 0) minAlpha = 0;
-        else if (minAlpha > 1.0f) minAlpha = 1.0f;
-        mMinAlpha = minAlpha;
+    public ItemTransformer getItemTransformer() {
+        return mItemTransformer;
+    }
+
+    /**
+     * Set the policy which tells the view holders their level of detail tier, so the far items
+     * can skip the expensive rendering
+     *
+     * @param policy level of detail policy, or null to keep all the items in full detail
+     */
+    public void setViewLodPolicy(ViewLodPolicy policy) {
+        mViewLodPolicy = policy;
+        if (policy != null) mLodTiersApplied = true;
         scaleAllItems();
     }
 
+    public ViewLodPolicy getViewLodPolicy() {
+        return mViewLodPolicy;
+    }
+
+    /*
+     * Parameters below are applied to the default linear transformer only.
+     */
+    public void setMinimumScale(float minScale) {
+        mDefaultTransformer.setMinimumScale(minScale);
+        onDefaultTransformerChanged();
+    }
+
+    public void setMinimumAlpha(float minAlpha) {
+        mDefaultTransformer.setMinimumAlpha(minAlpha);
+        onDefaultTransformerChanged();
+    }
+
     public void setMaxZ(float maxZ) {
-        if (maxZ < 0) maxZ = 0;
-        mMaxZ = maxZ;
-        scaleAllItems();
+        mDefaultTransformer.setMaxZ(maxZ);
+        onDefaultTransformerChanged();
     }
 
     public void setScaleStartDivider(int scaleStartDivider) {
-        if (scaleStartDivider < 1) scaleStartDivider = 1;
-        mScaleStartDivider = scaleStartDivider;
+        mDefaultTransformer.setScaleStartDivider(scaleStartDivider);
+        onDefaultTransformerChanged();
+    }
+
+    private void onDefaultTransformerChanged() {
+        if (mItemTransformer != mDefaultTransformer) return;
+        mTransformTableDirty = true;
         scaleAllItems();
     }
 
+    /**
+     * Number of view property writes done by the last {@link #scaleAllItems()} call
+     *
+     * @return applied writes count
+     */
+    public int getAppliedPropertyCount() {
+        return mAppliedPropertyCount;
+    }
+
+    /**
+     * Number of view property writes skipped by the last {@link #scaleAllItems()} call because
+     * the value did not change
+     *
+     * @return skipped writes count
+     */
+    public int getSkippedPropertyCount() {
+        return mSkippedPropertyCount;
+    }
+
+    /*
+     * Transform is read from the lookup table and written to the view only if it differs from
+     * the one applied last time.
+     */
     protected void scaleAllItems() {
-        for (int i = 0; i < getVisibleChildCount(); i++) {
+        mAppliedPropertyCount = 0;
+        mSkippedPropertyCount = 0;
+        if (getWidth() == 0) return;
+        if (mTransformTableDirty) buildTransformTable();
+
+        for (int i = 0; i < getChildCount(); i++) {
             View child = getChildAt(i);
-            if (child == null) continue;
-            float scale = getScaleForChild(child, false);
-            float alpha = scale;
-            float translationZScale = scale;
-            if (scale < mMinScale) scale = mMinScale;
-            if (alpha < mMinAlpha) alpha = mMinAlpha;
+            applyTransform(child, getTableSample(child));
+            if (mLodTiersApplied) applyLodTier(child);
+        }
+    }
+
+    /*
+     * Holder is told only about the tier changes, it keeps its tier while it is recycled.
+     * Without a policy holders go back to the full tier.
+     */
+    private void applyLodTier(View child) {
+        if (mDecoratedChildWidth <= 0 || !(child.getParent() instanceof RecyclerView)) return;
+        RecyclerView.ViewHolder holder = ((RecyclerView) child.getParent()).getChildViewHolder(child);
+        if (!(holder instanceof GalleryViewHolder)) return;
+        int left = getDecoratedLeft(child);
+        int right = getDecoratedRight(child);
+        float distance = Math.abs(left + (right - left) / 2f - getWidth() / 2f) / mDecoratedChildWidth;
+        ((GalleryViewHolder) holder).setLodTier(mViewLodPolicy != null
+                ? mViewLodPolicy.getTier(distance) : ViewLodPolicy.TIER_FULL);
+    }
+
+    /**
+     * Mark child as having unknown transform, so all its properties are written on the next
+     * {@link #scaleAllItems()}. Should be called for every newly added child.
+     *
+     * @param child child view
+     */
+    protected void invalidateTransform(View child) {
+        ((LayoutParams) child.getLayoutParams()).mTransformValid = false;
+    }
+
+    private void applyTransform(View child, float sample) {
+        final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+        final boolean valid = lp.mTransformValid;
+        final float scale = lookup(mScaleTable, sample);
+        if (!valid || Math.abs(lp.mAppliedScale - scale) > SCALE_EPSILON) {
             child.setScaleX(scale);
             child.setScaleY(scale);
+            lp.mAppliedScale = scale;
+            mAppliedPropertyCount += 2;
+        } else {
+            mSkippedPropertyCount += 2;
+        }
+        final float alpha = lookup(mAlphaTable, sample);
+        if (!valid || Math.abs(lp.mAppliedAlpha - alpha) > ALPHA_EPSILON) {
             child.setAlpha(alpha);
+            lp.mAppliedAlpha = alpha;
+            mAppliedPropertyCount++;
+        } else {
+            mSkippedPropertyCount++;
+        }
+        final float z = lookup(mZTable, sample);
+        if (!valid || Math.abs(lp.mAppliedZ - z) > Z_EPSILON) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                child.setTranslationZ(mMaxZ * translationZScale);
+                child.setTranslationZ(z);
             } else {
-                ViewCompat.setTranslationZ(child, mMaxZ * translationZScale);
+                ViewCompat.setTranslationZ(child, z);
             }
+            lp.mAppliedZ = z;
+            mAppliedPropertyCount++;
+        } else {
+            mSkippedPropertyCount++;
+        }
+        final float rotationY = lookup(mRotationYTable, sample);
+        if (!valid || Math.abs(lp.mAppliedRotationY - rotationY) > ROTATION_EPSILON) {
+            child.setRotationY(rotationY);
+            lp.mAppliedRotationY = rotationY;
+            mAppliedPropertyCount++;
+        } else {
+            mSkippedPropertyCount++;
+        }
+        final float translationX = lookup(mTranslationXTable, sample) * child.getWidth();
+        if (!valid || Math.abs(lp.mAppliedTranslationX - translationX) > TRANSLATION_EPSILON) {
+            child.setTranslationX(translationX);
+            lp.mAppliedTranslationX = translationX;
+            mAppliedPropertyCount++;
+        } else {
+            mSkippedPropertyCount++;
+        }
+        lp.mTransformValid = true;
+    }
+
+    /*
+     * Sample the item transformer once, so scrolling needs only table reads. Transform doesn't
+     * change after the max distance of the transformer, so the table covers only that range.
+     */
+    private void buildTransformTable() {
+        final ItemTransformer.Transform transform = new ItemTransformer.Transform();
+        final int center = TRANSFORM_TABLE_SIZE / 2;
+        float maxDistance = mItemTransformer.getMaxDistance();
+        if (maxDistance <= 0) maxDistance = 1;
+        mTableSamplesPerDistance = center / maxDistance;
+        for (int i = 0; i < TRANSFORM_TABLE_SIZE; i++) {
+            transform.reset();
+            mItemTransformer.getTransform((i - center) / mTableSamplesPerDistance, transform);
+            mScaleTable[i] = transform.scale;
+            mAlphaTable[i] = transform.alpha;
+            mZTable[i] = transform.translationZ;
+            mRotationYTable[i] = transform.rotationY;
+            mTranslationXTable[i] = transform.translationX;
         }
+        mTransformTableDirty = false;
     }
 
-    protected float getScaleForChild(View child, boolean considerMin) {
+    private static float lookup(float[] table, float sample) {
+        final int last = table.length - 1;
+        if (sample <= 0) return table[0];
+        if (sample >= last) return table[last];
+        final int index = (int) sample;
+        return table[index] + (table[index + 1] - table[index]) * (sample - index);
+    }
+
+    /**
+     * Position of the child in the transform lookup table, which depends on the signed distance
+     * from the center of the child to the center of the layout
+     *
+     * @param child child view
+     * @return fractional index in the lookup table
+     */
+    private float getTableSample(View child) {
         int left = getDecoratedLeft(child);
         int right = getDecoratedRight(child);
         float center = (float) (left + (right - left) / 2);
         float halfScreen = (float) getWidth() / 2;
-        float distanceFromCenter = Math.abs(halfScreen - center) / mScaleStartDivider;
-        float scale = 1 - distanceFromCenter / halfScreen;
-        if (scale < 0) scale = 0;
-        if (considerMin && scale < mMinScale) scale = mMinScale;
-        return scale;
+        return (center - halfScreen) / halfScreen * mTableSamplesPerDistance + TRANSFORM_TABLE_SIZE / 2;
+    }
+
+    /**
+     * Scale which is applied to the child by the item transformer at its current position
+     *
+     * @param child child view
+     * @return scale
+     */
+    protected float getScaleForChild(View child) {
+        if (mTransformTableDirty) buildTransformTable();
+        return lookup(mScaleTable, getTableSample(child));
     }
 
     /**
@@ -206,13 +1016,23 @@ public abstract class BaseGalleryLayoutManager extends RecyclerView.LayoutManage
      * @return position
      */
     protected int positionOfIndex(int childIndex) {
-        return getProperPosition(mFirstVisiblePosition + childIndex % mVisibleColumnCount);
+        //Gallery has a single row, so every child index is a column
+        return getProperPosition((long) mFirstVisiblePosition + childIndex);
     }
 
     protected int getVisibleChildCount() {
         return mVisibleColumnCount;
     }
 
+    /**
+     * Number of columns in the current window, including the overscan ones
+     *
+     * @return columns count, 0 before the first layout
+     */
+    int getVisibleColumnCount() {
+        return mVisibleColumnCount;
+    }
+
     protected int getTotalColumnCount() {
         return getItemCount();
     }
@@ -225,6 +1045,20 @@ public abstract class BaseGalleryLayoutManager extends RecyclerView.LayoutManage
         return (getHorizontalSpace() - mDecoratedChildWidth) / 2;
     }
 
+    protected int getCenteredItemOffset(int position) {
+        return (getHorizontalSpace() - getItemWidth(position)) / 2;
+    }
+
+    /**
+     * Items are actually shown in loop only when there are more items than the columns which
+     * fit on the screen. Overscan doesn't count, so the mode doesn't change during flings.
+     *
+     * @return true if items are laid out in loop
+     */
+    protected boolean isLoopLayout() {
+        return mShowItemsInLoop && mScreenColumnCount < getItemCount();
+    }
+
     public boolean isShowItemsInLoop() {
         return mShowItemsInLoop;
     }
@@ -237,6 +1071,112 @@ public abstract class BaseGalleryLayoutManager extends RecyclerView.LayoutManage
         requestLayout();
     }
 
+    /**
+     * Smooth scroller which centers the target item. Offset to the target is known even when
+     * the target view is not attached, so it scrolls there directly and only corrects the
+     * remaining distance once the target view appears. In snap mode the offset is given up front
+     * and scrolled by exactly one animation.
+     */
+    private class GallerySmoothScroller extends RecyclerView.SmoothScroller {
+
+        private final Interpolator mLinearInterpolator = new LinearInterpolator();
+        private final Interpolator mDecelerateInterpolator = new DecelerateInterpolator(1.5f);
+        private final float mMillisPerPixel;
+        private boolean mSeekStarted;
+        private int mSnapOffset;
+        private int mSnapDuration;
+
+        GallerySmoothScroller(Context context) {
+            mMillisPerPixel = MILLISECONDS_PER_INCH / context.getResources().getDisplayMetrics().densityDpi;
+        }
+
+        void setSnap(int offset, int duration) {
+            mSnapOffset = offset;
+            mSnapDuration = Math.max(1, duration);
+        }
+
+        @Override
+        protected void onStart() {
+            mSeekStarted = false;
+        }
+
+        @Override
+        protected void onStop() {
+        }
+
+        @Override
+        protected void onSeekTargetStep(int dx, int dy, RecyclerView.State state, Action action) {
+            if (mSeekStarted) return;
+            mSeekStarted = true;
+            if (mSnapOffset != 0) {
+                action.update(mSnapOffset, 0, mSnapDuration, mDecelerateInterpolator);
+                return;
+            }
+            int offset = getOffsetToItem(getTargetPosition());
+            if (offset == 0) {
+                stop();
+                return;
+            }
+            action.update(offset, 0, calculateTimeForScrolling(offset), mLinearInterpolator);
+        }
+
+        @Override
+        protected void onTargetFound(View targetView, RecyclerView.State state, Action action) {
+            if (mSnapOffset != 0) {
+                //Snap animation already ends on the target, it should not be restarted
+                if (!mSeekStarted) {
+                    mSeekStarted = true;
+                    action.update(mSnapOffset, 0, mSnapDuration, mDecelerateInterpolator);
+                }
+                return;
+            }
+            int offset = getOffsetToItem(getTargetPosition());
+            if (offset != 0) {
+                action.update(offset, 0, calculateTimeForScrolling(offset), mDecelerateInterpolator);
+            }
+        }
+
+        private int calculateTimeForScrolling(int dx) {
+            return Math.max(1, (int) Math.ceil(Math.abs(dx) * mMillisPerPixel));
+        }
+    }
+
+    /**
+     * Layout params of the gallery children. Remember the transform applied to the child, so
+     * unchanged values are not written to the view again.
+     */
+    public static class LayoutParams extends RecyclerView.LayoutParams {
+
+        boolean mTransformValid;
+        /* Measure generation of the layout manager when the child was measured last time */
+        int mMeasureGeneration;
+        float mAppliedScale;
+        float mAppliedAlpha;
+        float mAppliedZ;
+        float mAppliedRotationY;
+        float mAppliedTranslationX;
+
+        public LayoutParams(Context c, AttributeSet attrs) {
+            super(c, attrs);
+        }
+
+        public LayoutParams(int width, int height) {
+            super(width, height);
+        }
+
+        public LayoutParams(ViewGroup.MarginLayoutParams source) {
+            super(source);
+        }
+
+        public LayoutParams(ViewGroup.LayoutParams source) {
+            super(source);
+        }
+
+        public LayoutParams(RecyclerView.LayoutParams source) {
+            super(source);
+        }
+    }
+
     protected static class SavedState implements Parcelable {
         public static final Creator<SavedState> CREATOR
                 = new Creator<SavedState>() {
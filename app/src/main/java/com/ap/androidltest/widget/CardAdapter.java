@@ -0,0 +1,436 @@
+package com.ap.androidltest.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.v7.widget.CardView;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewOutlineProvider;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.ap.androidltest.R;
+import com.ap.androidltest.util.PaletteCache;
+import com.bumptech.glide.BitmapRequestBuilder;
+import com.bumptech.glide.DrawableRequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DecodeFormat;
+
+import java.util.List;
+
+/**
+ * Adapter of the image cards with a title and two buttons, shared by the gallery and the list
+ * screens. Resources are resolved once per adapter and applied once per holder. Holders
+ * remember the values they show, so a bind touches only the views whose values changed, and
+ * {@link #PAYLOAD_TITLE} or {@link #PAYLOAD_IMAGE} limit the bind to that field. Palettes of
+ * the bound images are warmed in {@link PaletteCache}.
+ * A layout whose root is a {@link GalleryCardView} is bound as a flat card.
+ * In the image level of detail mode cards far from the centered one of a gallery show a
+ * smaller image, the full one is loaded when they come closer. With a {@link ViewLodPolicy}
+ * set to the gallery cards drop their shadow from {@link #LOD_TIER_NO_SHADOW} and their title
+ * and buttons from {@link #LOD_TIER_NO_DETAILS}.
+ */
+public class CardAdapter extends GalleryAdapter<CardAdapter.CardViewHolder> {
+
+    /* Payloads for the partial binds */
+    public static final Object PAYLOAD_TITLE = new Object();
+    public static final Object PAYLOAD_IMAGE = new Object();
+    public static final int IMAGE_LOD_OFF = -1;
+    /* View level of detail tiers of the cards */
+    public static final int LOD_TIER_NO_SHADOW = ViewLodPolicy.TIER_FULL + 1;
+    public static final int LOD_TIER_NO_DETAILS = ViewLodPolicy.TIER_FULL + 2;
+    /* Quality of the image requests */
+    static final int QUALITY_DEFAULT = 0;
+    static final int QUALITY_FULL = 1;
+    static final int QUALITY_LOW = 2;
+    private final RequestManager mGlide;
+    private final int mLayoutId;
+    private DataSource mDataSource;
+    private OnCardActionListener mListener;
+    private CharSequence mFirstLabel;
+    private CharSequence mSecondLabel;
+    private final int mFirstLabelColor;
+    private final int mSecondLabelColor;
+    /* Size the images are requested in, 0 to take the size of the image view */
+    private int mImageWidth;
+    private int mImageHeight;
+    /* Distance from the centered item up to which the full images are loaded */
+    private int mFullQualityDistance = IMAGE_LOD_OFF;
+    private int mLowQualityDivider;
+    private boolean mLowQualityRgb565;
+
+    /**
+     * @param context    context to resolve the resources
+     * @param glide      request manager of the screen which shows the cards
+     * @param layoutId   card layout with card_view, info_image, info_text and the card buttons,
+     *                   or a layout of a {@link GalleryCardView}
+     * @param dataSource cards data
+     */
+    public CardAdapter(Context context, RequestManager glide, int layoutId, DataSource dataSource) {
+        mGlide = glide;
+        mLayoutId = layoutId;
+        mDataSource = dataSource;
+        mFirstLabel = context.getText(R.string.description_prev);
+        mSecondLabel = context.getText(R.string.description_next);
+        mFirstLabelColor = context.getResources().getColor(R.color.primary_dark);
+        mSecondLabelColor = context.getResources().getColor(R.color.primary);
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        mDataSource = dataSource;
+        notifyDataSetChanged();
+    }
+
+    public DataSource getDataSource() {
+        return mDataSource;
+    }
+
+    public void setOnCardActionListener(OnCardActionListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Set labels of the card buttons, "previous" and "next" by default
+     *
+     * @param first  label of the first button
+     * @param second label of the second button
+     */
+    public void setButtonLabels(CharSequence first, CharSequence second) {
+        mFirstLabel = first;
+        mSecondLabel = second;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Request the images in the given size instead of the size of the image views, so they
+     * match the images loaded ahead by {@link GalleryImagePreloader}
+     *
+     * @param width  image width, 0 to take the size of the image view
+     * @param height image height, 0 to take the size of the image view
+     */
+    public void setImageSize(int width, int height) {
+        mImageWidth = width;
+        mImageHeight = height;
+    }
+
+    /**
+     * Load smaller images for the cards further than the given distance from the centered item
+     * of the gallery. Full images are loaded when the cards come closer.
+     *
+     * @param fullQualityDistance distance in items, {@link #IMAGE_LOD_OFF} to load full images
+     *                            for all the cards
+     * @param lowQualityDivider   size of the smaller images is the item size divided by this
+     * @param rgb565              true to decode the smaller images without alpha, in half the
+     *                            memory
+     */
+    public void setImageLod(int fullQualityDistance, int lowQualityDivider, boolean rgb565) {
+        mFullQualityDistance = fullQualityDistance;
+        mLowQualityDivider = Math.max(1, lowQualityDivider);
+        mLowQualityRgb565 = rgb565;
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public CardViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View v = ViewPreInflater.getInstance().obtain(parent, mLayoutId);
+        GalleryRecyclerView gallery = parent instanceof GalleryRecyclerView ? (GalleryRecyclerView) parent : null;
+        CardViewHolder holder = new CardViewHolder(v, gallery);
+        if (holder.flatCard != null) {
+            holder.flatCard.setButtonColors(mFirstLabelColor, mSecondLabelColor);
+        } else {
+            holder.button1.setTextColor(mFirstLabelColor);
+            holder.button2.setTextColor(mSecondLabelColor);
+        }
+        return holder;
+    }
+
+    @Override
+    public void onBindItem(CardViewHolder holder, int position) {
+        holder.mListener = mListener;
+        holder.bindLabels(mFirstLabel, mSecondLabel);
+        holder.bindTitle(mDataSource.getTitle(position));
+        bindImage(holder, mDataSource.getImageResource(position), getImageQuality(holder.getGalleryRecyclerView(), position));
+    }
+
+    @Override
+    protected boolean onBindPayloads(CardViewHolder holder, int position, List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_TITLE && payload != PAYLOAD_IMAGE) return false;
+        }
+        holder.mListener = mListener;
+        for (Object payload : payloads) {
+            if (payload == PAYLOAD_TITLE) holder.bindTitle(mDataSource.getTitle(position));
+            else bindImage(holder, mDataSource.getImageResource(position), getImageQuality(holder.getGalleryRecyclerView(), position));
+        }
+        return true;
+    }
+
+    /*
+     * Cards which come close to the center get their full images
+     */
+    @Override
+    protected void onCenteredPositionChanged(GalleryRecyclerView gallery, int centeredPosition) {
+        if (mFullQualityDistance == IMAGE_LOD_OFF || mDataSource == null) return;
+        for (int i = 0; i < gallery.getChildCount(); i++) {
+            CardViewHolder holder = (CardViewHolder) gallery.getChildViewHolder(gallery.getChildAt(i));
+            int position = holder.getPosition();
+            if (position == RecyclerView.NO_POSITION || position >= mDataSource.getCount()) continue;
+            bindImage(holder, mDataSource.getImageResource(position), getImageQuality(gallery, position));
+        }
+    }
+
+    /**
+     * Quality of the image of the item, by its distance from the centered item
+     *
+     * @param gallery  gallery which shows the item or null
+     * @param position adapter position
+     * @return QUALITY_DEFAULT when the level of detail is off
+     */
+    int getImageQuality(GalleryRecyclerView gallery, int position) {
+        if (mFullQualityDistance == IMAGE_LOD_OFF) return QUALITY_DEFAULT;
+        BaseGalleryLayoutManager layoutManager = gallery != null
+                ? (BaseGalleryLayoutManager) gallery.getLayoutManager() : null;
+        if (layoutManager == null) return QUALITY_FULL;
+        int distance = Math.abs(layoutManager.getPositionDistance(gallery.getCenteredPosition(), position));
+        return distance > mFullQualityDistance ? QUALITY_LOW : QUALITY_FULL;
+    }
+
+    /**
+     * Image request of the default quality, in the image size if it is set
+     */
+    DrawableRequestBuilder<Integer> requestImage(RequestManager glide, int imageResource) {
+        DrawableRequestBuilder<Integer> request = glide.load(imageResource)
+                .fitCenter();
+        if (mImageWidth > 0 && mImageHeight > 0) request = request.override(mImageWidth, mImageHeight);
+        return request;
+    }
+
+    /**
+     * Image request of the level of detail mode. Requests are of bitmaps, so they can set the
+     * format, and the full image can show the cached smaller one until it is loaded.
+     */
+    BitmapRequestBuilder<Integer, Bitmap> requestLodImage(RequestManager glide, int imageResource, int quality) {
+        BitmapRequestBuilder<Integer, Bitmap> request = glide.load(imageResource)
+                .asBitmap()
+                .fitCenter();
+        if (quality == QUALITY_LOW) {
+            request = request.format(mLowQualityRgb565 ? DecodeFormat.PREFER_RGB_565 : DecodeFormat.PREFER_ARGB_8888);
+            if (mImageWidth > 0 && mImageHeight > 0) {
+                request = request.override(Math.max(1, mImageWidth / mLowQualityDivider),
+                        Math.max(1, mImageHeight / mLowQualityDivider));
+            }
+        } else {
+            request = request.format(DecodeFormat.PREFER_ARGB_8888);
+            if (mImageWidth > 0 && mImageHeight > 0) request = request.override(mImageWidth, mImageHeight);
+        }
+        return request;
+    }
+
+    private void bindImage(CardViewHolder holder, int imageResource, int quality) {
+        if (imageResource == holder.mBoundImage && mGlide == holder.mBoundGlide
+                && quality == holder.mBoundQuality) return;
+        if (quality == QUALITY_DEFAULT) {
+            //The flat card crops the image itself
+            DrawableRequestBuilder<Integer> request = requestImage(mGlide, imageResource);
+            if (holder.flatCard != null) request.into(holder.flatCard.getImageTarget());
+            else request.into(holder.image);
+        } else {
+            BitmapRequestBuilder<Integer, Bitmap> request = requestLodImage(mGlide, imageResource, quality);
+            //Smaller image is shown until the full one is loaded
+            if (quality == QUALITY_FULL && holder.mBoundQuality == QUALITY_LOW
+                    && imageResource == holder.mBoundImage && mGlide == holder.mBoundGlide) {
+                request = request.thumbnail(requestLodImage(mGlide, imageResource, QUALITY_LOW));
+            }
+            if (holder.flatCard != null) request.into(holder.flatCard.getBitmapTarget());
+            else request.into(holder.image);
+        }
+        //Details of the card open with the palette of its image
+        if (imageResource != holder.mBoundImage) {
+            PaletteCache.getInstance().warm(holder.itemView.getContext(), imageResource);
+        }
+        holder.mBoundImage = imageResource;
+        holder.mBoundGlide = mGlide;
+        holder.mBoundQuality = quality;
+    }
+
+    @Override
+    public int getItemCount() {
+        return mDataSource != null ? mDataSource.getCount() : 0;
+    }
+
+    /**
+     * Data of the cards
+     */
+    public static interface DataSource {
+        int getCount();
+
+        CharSequence getTitle(int position);
+
+        int getImageResource(int position);
+    }
+
+    /**
+     * Data source of the titles, images are repeated when there are less images than titles
+     */
+    public static class ArrayDataSource implements DataSource {
+
+        private final CharSequence[] mTitles;
+        private final int[] mImages;
+
+        public ArrayDataSource(CharSequence[] titles, int[] images) {
+            mTitles = titles;
+            mImages = images;
+        }
+
+        @Override
+        public int getCount() {
+            return mTitles.length;
+        }
+
+        @Override
+        public CharSequence getTitle(int position) {
+            return mTitles[position];
+        }
+
+        @Override
+        public int getImageResource(int position) {
+            return mImages[position % mImages.length];
+        }
+    }
+
+    public static interface OnCardActionListener {
+        /**
+         * Card was clicked outside of a gallery, gallery items are clicked through
+         * {@link GalleryRecyclerView.OnItemClickListener}
+         */
+        void onCardClick(CardViewHolder holder, int position);
+
+        void onFirstButtonClick(CardViewHolder holder, int position);
+
+        void onSecondButtonClick(CardViewHolder holder, int position);
+    }
+
+    /**
+     * Holder of the card views, with the values they currently show. Flat cards have only
+     * {@link #flatCard}, the other views are null.
+     */
+    public static class CardViewHolder extends GalleryViewHolder implements View.OnClickListener,
+            GalleryCardView.OnButtonClickListener {
+        public final GalleryCardView flatCard;
+        public final CardView cardView;
+        public final TextView titleText;
+        public final Button button1;
+        public final Button button2;
+        public final ImageView image;
+        private OnCardActionListener mListener;
+        private CharSequence mBoundTitle;
+        private CharSequence mBoundFirstLabel;
+        private CharSequence mBoundSecondLabel;
+        private int mBoundImage;
+        /* Images are cleared when the screen which loaded them is destroyed */
+        private RequestManager mBoundGlide;
+        private int mBoundQuality;
+        /* Outline which casts the shadow, a ViewOutlineProvider on Lollipop */
+        private Object mOutlineProvider;
+
+        public CardViewHolder(View v, GalleryRecyclerView gallery) {
+            super(v, gallery);
+            if (v instanceof GalleryCardView) {
+                flatCard = (GalleryCardView) v;
+                flatCard.setOnButtonClickListener(this);
+                cardView = null;
+                titleText = null;
+                button1 = null;
+                button2 = null;
+                image = null;
+            } else {
+                flatCard = null;
+                cardView = (CardView) v.findViewById(R.id.card_view);
+                titleText = (TextView) v.findViewById(R.id.info_text);
+                button1 = (Button) v.findViewById(R.id.card_button_1);
+                button2 = (Button) v.findViewById(R.id.card_button_2);
+                image = (ImageView) v.findViewById(R.id.info_image);
+                button1.setOnClickListener(this);
+                button2.setOnClickListener(this);
+            }
+            //Outside of a gallery the card opens itself
+            if (gallery == null) v.setOnClickListener(this);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                mOutlineProvider = v.getOutlineProvider();
+            }
+        }
+
+        /*
+         * Far cards are scaled down and faded, their shadow, title and buttons are hardly seen.
+         * Pre-Lollipop shadows are drawn by the CardView background and stay.
+         */
+        @Override
+        protected void onLodTierChanged(int oldTier, int newTier) {
+            boolean shadow = newTier < LOD_TIER_NO_SHADOW;
+            if (shadow != (oldTier < LOD_TIER_NO_SHADOW) && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                itemView.setOutlineProvider(shadow ? (ViewOutlineProvider) mOutlineProvider : null);
+            }
+            boolean details = newTier < LOD_TIER_NO_DETAILS;
+            if (details == (oldTier < LOD_TIER_NO_DETAILS)) return;
+            if (flatCard != null) {
+                flatCard.setDetailsShown(details);
+            } else {
+                int visibility = details ? View.VISIBLE : View.INVISIBLE;
+                titleText.setVisibility(visibility);
+                ((View) button1.getParent()).setVisibility(visibility);
+            }
+        }
+
+        void bindTitle(CharSequence title) {
+            if (title != null ? title.equals(mBoundTitle) : mBoundTitle == null) return;
+            if (flatCard != null) flatCard.setTitle(title);
+            else titleText.setText(title);
+            mBoundTitle = title;
+        }
+
+        void bindLabels(CharSequence first, CharSequence second) {
+            if (flatCard != null) {
+                if (first != mBoundFirstLabel || second != mBoundSecondLabel) {
+                    flatCard.setButtonLabels(first, second);
+                    mBoundFirstLabel = first;
+                    mBoundSecondLabel = second;
+                }
+                return;
+            }
+            if (first != mBoundFirstLabel) {
+                button1.setText(first);
+                mBoundFirstLabel = first;
+            }
+            if (second != mBoundSecondLabel) {
+                button2.setText(second);
+                mBoundSecondLabel = second;
+            }
+        }
+
+        @Override
+        public void onClick(View v) {
+            if (mListener == null) return;
+            switch (v.getId()) {
+                case R.id.card_button_1:
+                    mListener.onFirstButtonClick(this, getPosition());
+                    break;
+                case R.id.card_button_2:
+                    mListener.onSecondButtonClick(this, getPosition());
+                    break;
+                default:
+                    mListener.onCardClick(this, getPosition());
+                    break;
+            }
+        }
+
+        @Override
+        public void onButtonClick(GalleryCardView card, int button) {
+            if (mListener == null) return;
+            if (button == GalleryCardView.BUTTON_FIRST) mListener.onFirstButtonClick(this, getPosition());
+            else mListener.onSecondButtonClick(this, getPosition());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.ap.androidltest.widget;
+
+import java.util.Arrays;
+
+/**
+ * Level of detail policy with fixed distance limits. Items up to the first limit are of the
+ * full tier, each tier added with {@link #addTier(float, int)} applies to the items farther
+ * than its limit, e.g. a gallery may go from the full tier straight to any higher one.
+ */
+public class DistanceLodPolicy implements ViewLodPolicy {
+
+    private float[] mMinDistances = new float[0];
+    private int[] mTiers = new int[0];
+
+    /**
+     * Items farther than the distance get the tier, until the next added tier starts
+     *
+     * @param minDistance distance in item widths, bigger than the one of the previous tier
+     * @param tier        tier of the items, higher than {@link #TIER_FULL}
+     * @return this policy
+     */
+    public DistanceLodPolicy addTier(float minDistance, int tier) {
+        final int count = mTiers.length;
+        if (count > 0 && minDistance <= mMinDistances[count - 1]) {
+            throw new IllegalArgumentException("Tier distances should be ascending");
+        }
+        mMinDistances = Arrays.copyOf(mMinDistances, count + 1);
+        mTiers = Arrays.copyOf(mTiers, count + 1);
+        mMinDistances[count] = minDistance;
+        mTiers[count] = tier;
+        return this;
+    }
+
+    @Override
+    public int getTier(float distance) {
+        for (int i = mTiers.length - 1; i >= 0; i--) {
+            if (distance > mMinDistances[i]) return mTiers[i];
+        }
+        return TIER_FULL;
+    }
+}
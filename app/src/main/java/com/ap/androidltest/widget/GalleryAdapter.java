@@ -0,0 +1,129 @@
+package com.ap.androidltest.widget;
+
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Adapter for GalleryRecyclerView with change payloads. Item can be notified as changed with
+ * a payload describing what has changed, e.g. a price, and the holder which already shows
+ * that item is then updated by {@link #onBindPayloads} instead of the full bind.
+ * Payloads are dropped on any structural change, so the full bind is always the fallback.
+ */
+public abstract class GalleryAdapter<VH extends GalleryViewHolder> extends RecyclerView.Adapter<VH> {
+
+    private final SparseArray<List<Object>> mPendingPayloads = new SparseArray<>();
+
+    public GalleryAdapter() {
+        registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                mPendingPayloads.clear();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                mPendingPayloads.clear();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                mPendingPayloads.clear();
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                mPendingPayloads.clear();
+            }
+        });
+    }
+
+    /**
+     * Notify that the item has changed, and how
+     *
+     * @param position item position
+     * @param payload  description of the change passed to {@link #onBindPayloads}
+     */
+    public void notifyItemPayloadChanged(int position, Object payload) {
+        addPayload(position, payload);
+        notifyItemChanged(position);
+    }
+
+    /**
+     * Notify that the items have changed, and how
+     *
+     * @param positionStart position of the first changed item
+     * @param itemCount     number of changed items
+     * @param payload       description of the change passed to {@link #onBindPayloads}
+     */
+    public void notifyItemRangePayloadChanged(int positionStart, int itemCount, Object payload) {
+        for (int i = positionStart; i < positionStart + itemCount; i++) {
+            addPayload(i, payload);
+        }
+        notifyItemRangeChanged(positionStart, itemCount);
+    }
+
+    private void addPayload(int position, Object payload) {
+        if (payload == null) return;
+        List<Object> payloads = mPendingPayloads.get(position);
+        if (payloads == null) {
+            payloads = new ArrayList<>(1);
+            mPendingPayloads.put(position, payloads);
+        }
+        payloads.add(payload);
+    }
+
+    @Override
+    public final void onBindViewHolder(VH holder, int position) {
+        List<Object> payloads = mPendingPayloads.get(position);
+        if (payloads == null) {
+            payloads = Collections.emptyList();
+        } else {
+            mPendingPayloads.remove(position);
+        }
+        //Holder which was recycled or bound to another position shows other item
+        boolean sameItem = holder.mBoundPosition == position;
+        if (!sameItem || payloads.isEmpty() || !onBindPayloads(holder, position, payloads)) {
+            onBindItem(holder, position);
+        }
+        holder.mBoundPosition = position;
+    }
+
+    @Override
+    public void onViewRecycled(VH holder) {
+        holder.mBoundPosition = RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Bind all the item data to the holder
+     *
+     * @param holder   view holder
+     * @param position item position
+     */
+    public abstract void onBindItem(VH holder, int position);
+
+    /**
+     * Centered item of the gallery which shows the items has changed, items can update the
+     * details which depend on their distance from it
+     *
+     * @param gallery          gallery
+     * @param centeredPosition position of the new centered item
+     */
+    protected void onCenteredPositionChanged(GalleryRecyclerView gallery, int centeredPosition) {
+    }
+
+    /**
+     * Update only the changed parts of the holder, which already shows this item
+     *
+     * @param holder   view holder
+     * @param position item position
+     * @param payloads changes in the order they were notified
+     * @return false if the payloads are not known, the full bind is done then
+     */
+    protected boolean onBindPayloads(VH holder, int position, List<Object> payloads) {
+        return false;
+    }
+}
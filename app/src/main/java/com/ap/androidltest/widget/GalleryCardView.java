@@ -0,0 +1,471 @@
+package com.ap.androidltest.widget;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Outline;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.View;
+import android.view.ViewOutlineProvider;
+
+import com.ap.androidltest.R;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.request.animation.GlideAnimation;
+import com.bumptech.glide.request.target.ViewTarget;
+
+import java.util.Locale;
+
+/**
+ * Flat gallery card which draws the image, the title band and two buttons by itself, so the
+ * card is one view with one display list instead of a CardView hierarchy. Text layouts are
+ * built when the text or the size changes, never in onDraw. Buttons are regions of the bottom
+ * band which are hit-tested in onTouchEvent, the rest of the card is clicked as usual.
+ * <p/>
+ * By default the image fills the card and the title and the buttons are drawn over its bottom
+ * on a translucent band, as in item_coverflow_view. With imageHeight the image is a band at
+ * the top, the title takes the space below it with its padding, and the buttons are the row
+ * at the bottom, as in item_recycler_view. Sizes and colors are styleable.
+ */
+public class GalleryCardView extends View {
+
+    public static final int BUTTON_FIRST = 0;
+    public static final int BUTTON_SECOND = 1;
+    private static final int NO_BUTTON = -1;
+    /* Default geometry of the card in dp, the same as the cover flow CardView layout */
+    private static final int TITLE_HEIGHT_DP = 35;
+    private static final int BAR_HEIGHT_DP = 40;
+    private static final int BUTTON_HEIGHT_DP = 30;
+    private static final int BUTTON_MARGIN_DP = 10;
+    private static final int BUTTON_MIN_WIDTH_DP = 88;
+    private static final int TITLE_TEXT_SIZE_SP = 16;
+    private static final int LABEL_TEXT_SIZE_SP = 14;
+    private static final int BAND_COLOR = 0x66000000;
+    private static final int PRESSED_COLOR = 0x33FFFFFF;
+    private static final int CARD_COLOR = Color.WHITE;
+
+    private final TextPaint mTitlePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    /* One paint per button, so a color change doesn't need new text layouts */
+    private final TextPaint[] mLabelPaints = new TextPaint[]{
+            new TextPaint(Paint.ANTI_ALIAS_FLAG), new TextPaint(Paint.ANTI_ALIAS_FLAG)};
+    private final Paint mBandPaint = new Paint();
+    private final Paint mPressedPaint = new Paint();
+    private final Paint mCardPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF mCardRect = new RectF();
+    /* Image band at the top, 0 when the image fills the card */
+    private final int mImageHeight;
+    private final int mTitleHeight;
+    private final int mTitlePadding;
+    private final int mBarHeight;
+    private final int mButtonHeight;
+    private final int mButtonMargin;
+    private final int mButtonMinWidth;
+    private final float mCornerRadius;
+    private final ImageTarget mImageTarget = new ImageTarget(this);
+    private final BitmapTarget mBitmapTarget = new BitmapTarget(this);
+    private Drawable mImage;
+    private CharSequence mTitle;
+    private final CharSequence[] mLabels = new CharSequence[2];
+    /* Text layouts and hit regions, rebuilt only when the text or the size changes */
+    private StaticLayout mTitleLayout;
+    private final StaticLayout[] mLabelLayouts = new StaticLayout[2];
+    private final Rect[] mButtonRects = new Rect[]{new Rect(), new Rect()};
+    private final int[] mButtonWidths = new int[2];
+    private int mPressedButton = NO_BUTTON;
+    private boolean mDetailsShown = true;
+    private OnButtonClickListener mButtonClickListener;
+
+    public GalleryCardView(Context context) {
+        this(context, null);
+    }
+
+    public GalleryCardView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public GalleryCardView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        final float density = getResources().getDisplayMetrics().density;
+        mButtonMargin = (int) (BUTTON_MARGIN_DP * density + 0.5f);
+        mButtonMinWidth = (int) (BUTTON_MIN_WIDTH_DP * density + 0.5f);
+        TypedArray ta = context.obtainStyledAttributes(attrs, R.styleable.GalleryCardView, defStyle, 0);
+        try {
+            mImageHeight = ta.getDimensionPixelSize(R.styleable.GalleryCardView_imageHeight, 0);
+            mTitleHeight = ta.getDimensionPixelSize(R.styleable.GalleryCardView_titleHeight,
+                    (int) (TITLE_HEIGHT_DP * density + 0.5f));
+            mTitlePadding = ta.getDimensionPixelSize(R.styleable.GalleryCardView_titlePadding, 0);
+            mBarHeight = ta.getDimensionPixelSize(R.styleable.GalleryCardView_buttonBarHeight,
+                    (int) (BAR_HEIGHT_DP * density + 0.5f));
+            mButtonHeight = ta.getDimensionPixelSize(R.styleable.GalleryCardView_buttonHeight,
+                    (int) (BUTTON_HEIGHT_DP * density + 0.5f));
+            mCornerRadius = ta.getDimension(R.styleable.GalleryCardView_cardCornerRadius, 0);
+            mTitlePaint.setTextSize(ta.getDimension(R.styleable.GalleryCardView_titleTextSize,
+                    TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, TITLE_TEXT_SIZE_SP,
+                            getResources().getDisplayMetrics())));
+            mTitlePaint.setColor(ta.getColor(R.styleable.GalleryCardView_titleColor, Color.WHITE));
+            mBandPaint.setColor(ta.getColor(R.styleable.GalleryCardView_bandColor, BAND_COLOR));
+            mPressedPaint.setColor(ta.getColor(R.styleable.GalleryCardView_pressedColor, PRESSED_COLOR));
+        } finally {
+            ta.recycle();
+        }
+        mTitlePaint.setTypeface(Typeface.DEFAULT_BOLD);
+        final Typeface labelTypeface = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                ? Typeface.create("sans-serif-medium", Typeface.NORMAL) : Typeface.DEFAULT_BOLD;
+        final float labelTextSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
+                LABEL_TEXT_SIZE_SP, getResources().getDisplayMetrics());
+        for (TextPaint paint : mLabelPaints) {
+            paint.setColor(Color.WHITE);
+            paint.setTypeface(labelTypeface);
+            paint.setTextSize(labelTextSize);
+        }
+        mCardPaint.setColor(CARD_COLOR);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) initOutline();
+    }
+
+    /*
+     * There is no background to cast the shadow of the translation z. Rounded card clips the
+     * image to its corners, as CardView does on Lollipop.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void initOutline() {
+        if (mCornerRadius <= 0) {
+            setOutlineProvider(ViewOutlineProvider.BOUNDS);
+            return;
+        }
+        setOutlineProvider(new ViewOutlineProvider() {
+            @Override
+            public void getOutline(View view, Outline outline) {
+                outline.setRoundRect(0, 0, view.getWidth(), view.getHeight(), mCornerRadius);
+            }
+        });
+        setClipToOutline(true);
+    }
+
+    public void setTitle(CharSequence title) {
+        if (TextUtils.equals(mTitle, title)) return;
+        mTitle = title;
+        setContentDescription(title);
+        buildTitleLayout();
+        invalidate();
+    }
+
+    public CharSequence getTitle() {
+        return mTitle;
+    }
+
+    /**
+     * Set labels of the buttons, they are shown in caps as the borderless buttons do
+     *
+     * @param first  label of the first button
+     * @param second label of the second button
+     */
+    public void setButtonLabels(CharSequence first, CharSequence second) {
+        mLabels[BUTTON_FIRST] = first != null ? first.toString().toUpperCase(Locale.getDefault()) : null;
+        mLabels[BUTTON_SECOND] = second != null ? second.toString().toUpperCase(Locale.getDefault()) : null;
+        buildButtonLayouts();
+        invalidate();
+    }
+
+    public void setButtonColors(int first, int second) {
+        if (mLabelPaints[BUTTON_FIRST].getColor() == first && mLabelPaints[BUTTON_SECOND].getColor() == second) return;
+        mLabelPaints[BUTTON_FIRST].setColor(first);
+        mLabelPaints[BUTTON_SECOND].setColor(second);
+        invalidate();
+    }
+
+    /**
+     * Show or hide the title and the buttons, e.g. for the far cards which are too small to
+     * read them. Hidden buttons are not clickable.
+     *
+     * @param shown true to show the details
+     */
+    public void setDetailsShown(boolean shown) {
+        if (mDetailsShown == shown) return;
+        mDetailsShown = shown;
+        if (!shown) mPressedButton = NO_BUTTON;
+        invalidate();
+    }
+
+    public void setOnButtonClickListener(OnButtonClickListener listener) {
+        mButtonClickListener = listener;
+    }
+
+    public void setImageDrawable(Drawable image) {
+        if (mImage == image) return;
+        if (mImage != null) mImage.setCallback(null);
+        mImage = image;
+        if (image != null) {
+            image.setCallback(this);
+            updateImageBounds();
+        }
+        invalidate();
+    }
+
+    public Drawable getImageDrawable() {
+        return mImage;
+    }
+
+    /**
+     * Glide target which shows the loaded image on this card
+     *
+     * @return image target
+     */
+    public ViewTarget<GalleryCardView, GlideDrawable> getImageTarget() {
+        return mImageTarget;
+    }
+
+    /**
+     * Glide target which shows the loaded bitmap on this card
+     *
+     * @return bitmap target
+     */
+    public ViewTarget<GalleryCardView, Bitmap> getBitmapTarget() {
+        return mBitmapTarget;
+    }
+
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        return who == mImage || super.verifyDrawable(who);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mCardRect.set(0, 0, w, h);
+        updateImageBounds();
+        if (w != oldw) buildTitleLayout();
+        buildButtonLayouts();
+    }
+
+    /*
+     * Image is scaled to crop its area, like the centerCrop ImageView of the CardView layout
+     */
+    private void updateImageBounds() {
+        if (mImage == null) return;
+        final int width = getWidth();
+        final int height = getImageBottom();
+        final int imageWidth = mImage.getIntrinsicWidth();
+        final int imageHeight = mImage.getIntrinsicHeight();
+        if (imageWidth <= 0 || imageHeight <= 0) {
+            mImage.setBounds(0, 0, width, height);
+            return;
+        }
+        float scale = Math.max((float) width / imageWidth, (float) height / imageHeight);
+        int scaledWidth = Math.round(imageWidth * scale);
+        int scaledHeight = Math.round(imageHeight * scale);
+        int left = (width - scaledWidth) / 2;
+        int top = (height - scaledHeight) / 2;
+        mImage.setBounds(left, top, left + scaledWidth, top + scaledHeight);
+    }
+
+    /*
+     * Text layouts are built when the text or the size changes, so onDraw allocates nothing
+     */
+    private void buildTitleLayout() {
+        final int width = getWidth() - 2 * mTitlePadding;
+        mTitleLayout = null;
+        if (mTitle == null || width <= 0) return;
+        if (mImageHeight > 0) {
+            //Title below the image wraps, the lines which don't fit are clipped
+            mTitleLayout = new StaticLayout(mTitle, mTitlePaint, width, Layout.Alignment.ALIGN_NORMAL,
+                    1, 0, false);
+            return;
+        }
+        CharSequence title = TextUtils.ellipsize(mTitle, mTitlePaint, width, TextUtils.TruncateAt.END);
+        mTitleLayout = new StaticLayout(title, mTitlePaint, width, Layout.Alignment.ALIGN_CENTER,
+                1, 0, false);
+    }
+
+    private void buildButtonLayouts() {
+        final int width = getWidth();
+        //Buttons are centered together in the bottom band, each one with its margins
+        int totalWidth = 0;
+        for (int i = 0; i < 2; i++) {
+            mLabelLayouts[i] = null;
+            if (mLabels[i] == null || width <= 0) continue;
+            int textWidth = (int) Math.ceil(Layout.getDesiredWidth(mLabels[i], mLabelPaints[i]));
+            mButtonWidths[i] = Math.max(textWidth, mButtonMinWidth);
+            mLabelLayouts[i] = new StaticLayout(mLabels[i], mLabelPaints[i], mButtonWidths[i],
+                    Layout.Alignment.ALIGN_CENTER, 1, 0, false);
+            totalWidth += mButtonWidths[i] + 2 * mButtonMargin;
+        }
+        int left = (width - totalWidth) / 2 + mButtonMargin;
+        final int top = getHeight() - mBarHeight + (mBarHeight - mButtonHeight) / 2;
+        for (int i = 0; i < 2; i++) {
+            if (mLabelLayouts[i] == null) {
+                mButtonRects[i].setEmpty();
+                continue;
+            }
+            mButtonRects[i].set(left, top, left + mButtonWidths[i], top + mButtonHeight);
+            left += mButtonWidths[i] + 2 * mButtonMargin;
+        }
+    }
+
+    /*
+     * Image fills the card unless it has a band of its own
+     */
+    private int getImageBottom() {
+        return mImageHeight > 0 ? Math.min(mImageHeight, getHeight()) : getHeight();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        final int width = getWidth();
+        final int height = getHeight();
+        final int imageBottom = getImageBottom();
+
+        if (mImage == null || imageBottom < height) {
+            canvas.drawRoundRect(mCardRect, mCornerRadius, mCornerRadius, mCardPaint);
+        }
+        if (mImage != null) {
+            canvas.save();
+            canvas.clipRect(0, 0, width, imageBottom);
+            mImage.draw(canvas);
+            canvas.restore();
+        }
+
+        if (!mDetailsShown) return;
+        final int barTop = height - mBarHeight;
+        final int titleTop = mImageHeight > 0 ? imageBottom : barTop - mTitleHeight;
+        canvas.drawRect(0, titleTop, width, height, mBandPaint);
+        if (mTitleLayout != null) {
+            canvas.save();
+            if (mImageHeight > 0) {
+                canvas.clipRect(0, titleTop, width, barTop);
+                canvas.translate(mTitlePadding, titleTop + mTitlePadding);
+            } else {
+                canvas.translate(mTitlePadding, titleTop + (mTitleHeight - mTitleLayout.getHeight()) / 2);
+            }
+            mTitleLayout.draw(canvas);
+            canvas.restore();
+        }
+
+        for (int i = 0; i < 2; i++) {
+            if (mLabelLayouts[i] == null) continue;
+            final Rect rect = mButtonRects[i];
+            if (mPressedButton == i) canvas.drawRect(rect, mPressedPaint);
+            canvas.save();
+            canvas.translate(rect.left, rect.top + (rect.height() - mLabelLayouts[i].getHeight()) / 2);
+            mLabelLayouts[i].draw(canvas);
+            canvas.restore();
+        }
+    }
+
+    /*
+     * Touches which start on a button belong to the button, all the others to the card
+     */
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                int button = findButton(event.getX(), event.getY());
+                if (button == NO_BUTTON) return super.onTouchEvent(event);
+                setPressedButton(button);
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if (mPressedButton == NO_BUTTON) return super.onTouchEvent(event);
+                if (findButton(event.getX(), event.getY()) != mPressedButton) setPressedButton(NO_BUTTON);
+                return true;
+            case MotionEvent.ACTION_UP:
+                if (mPressedButton == NO_BUTTON) return super.onTouchEvent(event);
+                int clicked = mPressedButton;
+                setPressedButton(NO_BUTTON);
+                playSoundEffect(SoundEffectConstants.CLICK);
+                if (mButtonClickListener != null) mButtonClickListener.onButtonClick(this, clicked);
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                if (mPressedButton == NO_BUTTON) return super.onTouchEvent(event);
+                setPressedButton(NO_BUTTON);
+                return true;
+        }
+        return super.onTouchEvent(event);
+    }
+
+    private int findButton(float x, float y) {
+        //Whole height of the bottom band is the hit region, buttons themselves are rather low
+        if (!mDetailsShown || y < getHeight() - mBarHeight) return NO_BUTTON;
+        for (int i = 0; i < 2; i++) {
+            final Rect rect = mButtonRects[i];
+            if (!rect.isEmpty() && x >= rect.left && x < rect.right) return i;
+        }
+        return NO_BUTTON;
+    }
+
+    private void setPressedButton(int button) {
+        if (mPressedButton == button) return;
+        mPressedButton = button;
+        invalidate();
+    }
+
+    public static interface OnButtonClickListener {
+        /**
+         * @param card   clicked card
+         * @param button BUTTON_FIRST or BUTTON_SECOND
+         */
+        void onButtonClick(GalleryCardView card, int button);
+    }
+
+    private static class BitmapTarget extends ViewTarget<GalleryCardView, Bitmap> {
+
+        BitmapTarget(GalleryCardView view) {
+            super(view);
+        }
+
+        @Override
+        public void onResourceReady(Bitmap resource, GlideAnimation<? super Bitmap> glideAnimation) {
+            view.setImageDrawable(new BitmapDrawable(view.getResources(), resource));
+        }
+
+        @Override
+        public void onLoadCleared(Drawable placeholder) {
+            view.setImageDrawable(placeholder);
+        }
+
+        @Override
+        public void onLoadFailed(Exception e, Drawable errorDrawable) {
+            view.setImageDrawable(errorDrawable);
+        }
+    }
+
+    private static class ImageTarget extends ViewTarget<GalleryCardView, GlideDrawable> {
+
+        ImageTarget(GalleryCardView view) {
+            super(view);
+        }
+
+        @Override
+        public void onResourceReady(GlideDrawable resource, GlideAnimation<? super GlideDrawable> glideAnimation) {
+            view.setImageDrawable(resource);
+            if (resource.isAnimated()) {
+                resource.setLoopCount(GlideDrawable.LOOP_FOREVER);
+                resource.start();
+            }
+        }
+
+        @Override
+        public void onLoadCleared(Drawable placeholder) {
+            view.setImageDrawable(placeholder);
+        }
+
+        @Override
+        public void onLoadFailed(Exception e, Drawable errorDrawable) {
+            view.setImageDrawable(errorDrawable);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.ap.androidltest.widget;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.request.animation.GlideAnimation;
+import com.bumptech.glide.request.target.SimpleTarget;
+import com.bumptech.glide.request.target.Target;
+
+/**
+ * Loads the card images ahead of the scroll into the Glide memory cache, so a card has its
+ * image in the frame it is bound. Gallery calls it when the centered position changes, the
+ * items behind the window in the scroll direction are loaded. Images are requested in the
+ * size of the item views, and the adapter binds them in the same size to hit the cache. In loop
+ * mode positions wrap around the data set. Images are loaded in the quality the adapter binds
+ * them in, see {@link CardAdapter#setImageLod}.
+ */
+public class GalleryImagePreloader {
+
+    public static final int DEFAULT_PRELOAD_COUNT = 3;
+    private final RequestManager mGlide;
+    private final CardAdapter mAdapter;
+    private final int mPreloadCount;
+    /* Slots are reused in turn, reusing one releases the image it loaded */
+    private final Target<?>[] mTargets;
+    private final int[] mImageResources;
+    private final int[] mQualities;
+    private int mNextTarget;
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * @param glide        request manager of the screen which shows the gallery
+     * @param adapter      adapter of the gallery
+     * @param preloadCount number of items loaded ahead
+     */
+    public GalleryImagePreloader(RequestManager glide, CardAdapter adapter, int preloadCount) {
+        mGlide = glide;
+        mAdapter = adapter;
+        mPreloadCount = Math.max(0, preloadCount);
+        mTargets = new Target<?>[mPreloadCount];
+        mImageResources = new int[mPreloadCount];
+        mQualities = new int[mPreloadCount];
+    }
+
+    void onCenteredPositionChanged(GalleryRecyclerView gallery, int oldPosition, int newPosition) {
+        BaseGalleryLayoutManager layoutManager = (BaseGalleryLayoutManager) gallery.getLayoutManager();
+        CardAdapter.DataSource dataSource = mAdapter.getDataSource();
+        if (layoutManager == null || dataSource == null || mPreloadCount == 0) return;
+        int itemCount = dataSource.getCount();
+        int distance = layoutManager.getPositionDistance(oldPosition, newPosition);
+        if (itemCount == 0 || distance == 0 || layoutManager.getVisibleColumnCount() == 0) return;
+        if (!updateSize(layoutManager.getItemViewWidth(), layoutManager.getItemViewHeight())) return;
+
+        final int direction = distance > 0 ? 1 : -1;
+        final boolean loop = layoutManager.isLoopLayout();
+        //Items of the window are bound already
+        int position = newPosition + direction * (layoutManager.getVisibleColumnCount() / 2 + 1);
+        for (int i = 0; i < mPreloadCount; i++, position += direction) {
+            int properPosition = position;
+            if (loop) properPosition = ((position % itemCount) + itemCount) % itemCount;
+            else if (position < 0 || position >= itemCount) break;
+            preload(dataSource.getImageResource(properPosition), mAdapter.getImageQuality(gallery, properPosition));
+        }
+    }
+
+    /**
+     * Release the preloaded images
+     */
+    public void clear() {
+        for (int i = 0; i < mPreloadCount; i++) {
+            if (mTargets[i] != null) Glide.clear(mTargets[i]);
+            mTargets[i] = null;
+            mImageResources[i] = 0;
+        }
+    }
+
+    /*
+     * Images of the new size are new images, the adapter binds in the same size
+     */
+    private boolean updateSize(int width, int height) {
+        if (width <= 0 || height <= 0) return false;
+        if (width == mWidth && height == mHeight) return true;
+        clear();
+        mWidth = width;
+        mHeight = height;
+        mAdapter.setImageSize(width, height);
+        return true;
+    }
+
+    private void preload(int imageResource, int quality) {
+        for (int i = 0; i < mPreloadCount; i++) {
+            if (mImageResources[i] == imageResource && mQualities[i] == quality) return;
+        }
+        final int slot = mNextTarget;
+        mNextTarget = (mNextTarget + 1) % mPreloadCount;
+        if (mTargets[slot] != null) Glide.clear(mTargets[slot]);
+        mImageResources[slot] = imageResource;
+        mQualities[slot] = quality;
+        //Requests have the size of the items, targets don't need one
+        if (quality == CardAdapter.QUALITY_DEFAULT) {
+            mTargets[slot] = mAdapter.requestImage(mGlide, imageResource).into(new PreloadTarget<GlideDrawable>());
+        } else {
+            mTargets[slot] = mAdapter.requestLodImage(mGlide, imageResource, quality).into(new PreloadTarget<Bitmap>());
+        }
+    }
+
+    private static class PreloadTarget<Z> extends SimpleTarget<Z> {
+        @Override
+        public void onResourceReady(Z resource, GlideAnimation<? super Z> glideAnimation) {
+            //Image stays in the memory cache, nothing to show
+        }
+    }
+}
@@ -5,7 +5,7 @@ import android.util.Log;
 import android.util.SparseArray;
 import android.view.View;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 /**
  * Created by AP on 19/11/14.
@@ -14,9 +14,16 @@ import java.util.HashMap;
 public class GalleryLayoutManager extends BaseGalleryLayoutManager {
 
     private static final String TAG = GalleryLayoutManager.class.getSimpleName();
+    private static final boolean DEBUG = false;
     /* Flag to force current scroll offsets to be ignored on re-layout */
     private int mFirstItemOffset = NOT_SET, mLastItemOffset = NOT_SET;
-    private HashMap<View, Integer> mPositions = new HashMap<>();
+    /* Horizontal cover flow offsets applied to the children, indexed by child index */
+    private int[] mChildOffsets = new int[0];
+    /* Views cache reused by fill methods so that scrolling does not allocate on every frame */
+    private final SparseArray<View> mViewCache = new SparseArray<>();
+    /* Item which keeps its place across adapter changes, and its left relative to the padding */
+    private int mAnchorPosition = NOT_SET;
+    private int mAnchorLeft;
 
     public GalleryLayoutManager() {
         Log.d(TAG, "Initializing GalleryLayoutManager");
@@ -33,26 +40,37 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
      */
     @Override
     public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
+        mRecycler = recycler;
+        //Views could be rebound or the data set changed, so prefetched positions are not trusted
+        clearPrefetched();
+        validateMeasureCache();
+
         //We have nothing to show for an empty data set but clear any existing views
         if (getItemCount() == 0) {
             detachAndScrapAttachedViews(recycler);
+            mAnchorPosition = NOT_SET;
             return;
         }
 
+        //Window could be resized since the last pass, the centered item should stay where it is
+        captureAnchor();
+
         if (getChildCount() == 0) { //First or empty layout
             //Scrap measure one child
             View scrap = recycler.getViewForPosition(0);
             addView(scrap);
-            measureChildWithMargins(scrap, 0, 0);
+            measureItem(scrap, 0);
 
             /*
-             * We make some assumptions in this code based on every child
-             * view being the same size (i.e. a uniform grid). This allows
-             * us to compute the following values up front because they
-             * won't change.
+             * Width of the first child is only an estimate for the items
+             * which were not measured yet, every added child updates the
+             * width index with its own width. Height is applied to all
+             * the children.
              */
             mDecoratedChildWidth = getDecoratedMeasuredWidth(scrap);
             mDecoratedChildHeight = getDecoratedMeasuredHeight(scrap);
+            mItemViewWidth = scrap.getMeasuredWidth();
+            mItemViewHeight = scrap.getMeasuredHeight();
 
             if (mFirstItemOffset == NOT_SET)
                 mFirstItemOffset = getCenteredItemOffset();
@@ -62,11 +80,76 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
             detachAndScrapView(scrap, recycler);
         }
 
+        //Known widths are kept while the data set size is the same
+        if (mWidthIndex.getCount() != getItemCount()) {
+            mWidthIndex.reset(getItemCount(), mDecoratedChildWidth);
+        }
+
+        //Offsets are tracked by child index, so they must be undone before any re-layout
+        removeAllOffsets();
+
         //Always update the visible row/column counts
         updateWindowSizing();
 
         if (isCoverFlow()) onLayoutChildrenCoverFlow(recycler, state);
         else onLayoutChildrenGallery(recycler, state);
+        mAnchorPosition = NOT_SET;
+    }
+
+    /*
+     * Adapter changes below only update the width index and the anchor. The layout pass which
+     * follows re-attaches the views of unaffected positions from the scrap without rebinding,
+     * only the changed positions are bound again.
+     */
+    @Override
+    public void onItemsAdded(RecyclerView recyclerView, int positionStart, int itemCount) {
+        captureAnchor();
+        if (mWidthIndex.getCount() > 0) mWidthIndex.insert(positionStart, itemCount);
+        if (mAnchorPosition != NOT_SET && positionStart <= mAnchorPosition) mAnchorPosition += itemCount;
+    }
+
+    @Override
+    public void onItemsRemoved(RecyclerView recyclerView, int positionStart, int itemCount) {
+        captureAnchor();
+        if (mWidthIndex.getCount() > 0) mWidthIndex.remove(positionStart, itemCount);
+        if (mAnchorPosition == NOT_SET) return;
+        if (mAnchorPosition >= positionStart + itemCount) mAnchorPosition -= itemCount;
+        else if (mAnchorPosition >= positionStart) mAnchorPosition = positionStart; //Next item takes its place
+    }
+
+    @Override
+    public void onItemsUpdated(RecyclerView recyclerView, int positionStart, int itemCount) {
+        //Updated items could change their width, the centered item should not jump anyway
+        captureAnchor();
+    }
+
+    /*
+     * Moves are reported to the layout manager by the newer versions of the recyclerview library
+     * only, so there is no @Override here.
+     */
+    public void onItemsMoved(RecyclerView recyclerView, int from, int to, int itemCount) {
+        captureAnchor();
+        if (mWidthIndex.getCount() > 0) mWidthIndex.move(from, to, itemCount);
+        if (mAnchorPosition == NOT_SET) return;
+        if (mAnchorPosition >= from && mAnchorPosition < from + itemCount) mAnchorPosition += to - from;
+        else if (from < to && mAnchorPosition >= from + itemCount && mAnchorPosition < to + itemCount) mAnchorPosition -= itemCount;
+        else if (from > to && mAnchorPosition >= to && mAnchorPosition < from) mAnchorPosition += itemCount;
+    }
+
+    /**
+     * Remember which item is centered and where it is, before the first adapter change of the
+     * layout pass. Later changes only update its position.
+     */
+    private void captureAnchor() {
+        final int count = mWidthIndex.getCount();
+        if (mAnchorPosition != NOT_SET || getChildCount() == 0 || count == 0
+                || mPendingCenteredPosition != NOT_SET) return;
+        final long centerOffset = getCenterVirtualOffset();
+        long centered = getVirtualPositionAt(centerOffset);
+        if (!isCoverFlow()) centered = Math.max(mFirstVisiblePosition, Math.min(centered, count - 1));
+        mAnchorLeft = clampToInt(getHorizontalSpace() / 2 - (centerOffset - getVirtualOffset(centered)));
+        //Wrap by the item count of the index, adapter already reports the new one
+        mAnchorPosition = (int) (((centered % count) + count) % count);
     }
 
     /*
@@ -80,6 +163,14 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
             return 0;
         }
 
+        mRecycler = recycler;
+        trackScrollVelocity(dx);
+        int direction = dx > 0 ? DIRECTION_END : DIRECTION_START;
+        if (direction != mScrollDirection) {
+            clearPrefetched();
+            mScrollDirection = direction;
+        }
+
         if (isCoverFlow()) return scrollHorizontallyCoverFlowBy(dx, recycler, state);
         return scrollHorizontallyGalleryBy(dx, recycler, state);
     }
@@ -96,7 +187,7 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
     }
 
     @Override
-    protected int getProperPosition(int position) {
+    protected int getProperPosition(long position) {
         if (isCoverFlow()) return getProperPositionCoverFlow(position);
         return getProperPositionGallery(position);
     }
@@ -104,18 +195,26 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
     private void onLayoutChildrenCoverFlow(RecyclerView.Recycler recycler, @SuppressWarnings("UnusedParameters") RecyclerView.State state) {
         int childLeft;
 
-        removeAllOffsets();
-
-        Log.d(TAG, "onLayoutChildrenCoverFlow " + (mPendingCenteredPosition != NOT_SET) + "   " + (getChildCount() == 0));
-        int centeredChild = Math.round((float) getVisibleChildCount() / 2.0f) - 1;
+        if (DEBUG)
+            Log.d(TAG, "onLayoutChildrenCoverFlow " + (mPendingCenteredPosition != NOT_SET) + "   " + (getChildCount() == 0));
+        int centeredChild = getCenteredChildSlot();
         if (mPendingCenteredPosition != NOT_SET) {
             //situation when there are should be items which go out of screen before the centered item
             mFirstVisiblePosition = mPendingCenteredPosition - centeredChild;
-            childLeft = getCenteredItemOffset() - centeredChild * mDecoratedChildWidth;
+            childLeft = getCenteredItemOffset(mPendingCenteredPosition)
+                    - getColumnsWidth(mFirstVisiblePosition, mPendingCenteredPosition);
             mPendingCenteredPosition = NOT_SET;
         } else if (getChildCount() == 0) {
-            mFirstVisiblePosition = getProperPosition(mFirstVisiblePosition - centeredChild);
-            childLeft = getCenteredItemOffset() - centeredChild * mDecoratedChildWidth;
+            int centeredPosition = mFirstVisiblePosition;
+            mFirstVisiblePosition = centeredPosition - centeredChild;
+            childLeft = getCenteredItemOffset(centeredPosition)
+                    - getColumnsWidth(mFirstVisiblePosition, centeredPosition);
+            mFirstVisiblePosition = getProperPosition(mFirstVisiblePosition);
+        } else if (mAnchorPosition != NOT_SET) { //Adapter items changed
+            //Anchor item stays in the centered slot exactly where it was
+            int anchor = Math.min(mAnchorPosition, getItemCount() - 1);
+            mFirstVisiblePosition = anchor - centeredChild;
+            childLeft = mAnchorLeft - getColumnsWidth(mFirstVisiblePosition, anchor);
         } else { //Adapter data set changes
             /*
              * Keep the existing initial position, and save off
@@ -136,17 +235,18 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
         int childTop = 0;
 
         if (mPendingCenteredPosition != NOT_SET) {
-            int centeredChild = Math.round((float) getVisibleChildCount() / 2.0f) - 1;
-            if (mPendingCenteredPosition <= centeredChild) {
+            int centeredLeft = getCenteredItemOffset(mPendingCenteredPosition);
+            long pendingOffset = getVirtualOffset(mPendingCenteredPosition);
+            if (pendingOffset <= centeredLeft) {
                 //situation when most left item should have padding from left
-                mFirstItemOffset = getCenteredItemOffset() - mPendingCenteredPosition * mDecoratedChildWidth;
+                mFirstItemOffset = (int) (centeredLeft - pendingOffset);
                 mFirstVisiblePosition = 0;
                 childLeft = mFirstItemOffset;
             } else {
                 //situation when there are should be items which go out of screen before the centered item
                 mFirstItemOffset = 0;
-                mFirstVisiblePosition = mPendingCenteredPosition - centeredChild;
-                childLeft = getCenteredItemOffset() - centeredChild * mDecoratedChildWidth;
+                mFirstVisiblePosition = (int) getVirtualPositionAt(pendingOffset - centeredLeft);
+                childLeft = centeredLeft - getColumnsWidth(mFirstVisiblePosition, mPendingCenteredPosition);
             }
             mPendingCenteredPosition = NOT_SET;
         } else if (getChildCount() == 0) { //First or empty layout
@@ -156,6 +256,19 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
             //Data set is too small to scroll fully, just reset position
             mFirstVisiblePosition = 0;
             childLeft = 0;
+        } else if (mAnchorPosition != NOT_SET) { //Adapter items changed
+            //Anchor item stays exactly where it was
+            int anchor = Math.min(mAnchorPosition, getItemCount() - 1);
+            long anchorOffset = getVirtualOffset(anchor);
+            if (anchorOffset <= mAnchorLeft) {
+                mFirstItemOffset = (int) (mAnchorLeft - anchorOffset);
+                mFirstVisiblePosition = 0;
+                childLeft = mFirstItemOffset;
+            } else {
+                mFirstItemOffset = 0;
+                mFirstVisiblePosition = (int) getVirtualPositionAt(anchorOffset - mAnchorLeft);
+                childLeft = mAnchorLeft - getColumnsWidth(mFirstVisiblePosition, anchor);
+            }
         } else { //Adapter data set changes
             /*
              * Keep the existing initial position, and save off
@@ -181,7 +294,8 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
          * detachView() is a lightweight operation that we can use to
          * quickly reorder views without a full add/remove.
          */
-        SparseArray<View> viewCache = new SparseArray<>(getChildCount());
+        final SparseArray<View> viewCache = mViewCache;
+        viewCache.clear();
         int startLeftOffset = getPaddingLeft() + emptyLeft;
         int startTopOffset = getPaddingTop() + emptyTop;
         if (getChildCount() != 0) {
@@ -190,10 +304,10 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
             startTopOffset = getDecoratedTop(topView);
             switch (direction) {
                 case DIRECTION_START:
-                    startLeftOffset -= mDecoratedChildWidth;
+                    startLeftOffset -= getItemWidth(getProperPosition(mFirstVisiblePosition - 1));
                     break;
                 case DIRECTION_END:
-                    startLeftOffset += mDecoratedChildWidth;
+                    startLeftOffset += getDecoratedMeasuredWidth(topView);
                     break;
             }
 
@@ -245,6 +359,7 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
 
             //Layout this position
             View view = viewCache.get(nextPosition);
+            int width;
             if (view == null) {
                 /*
                  * The Recycler will give us either a newly constructed view,
@@ -254,20 +369,22 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
                  */
                 view = recycler.getViewForPosition(nextPosition);
                 addView(view);
+                invalidateTransform(view);
 
                 /*
                  * It is prudent to measure/layout each new view we
                  * receive from the Recycler. We don't have to do
                  * this for views we are just re-arranging.
                  */
-                measureChildWithMargins(view, 0, 0);
+                width = measureItem(view, nextPosition);
                 layoutDecorated(view, leftOffset, topOffset,
-                        leftOffset + mDecoratedChildWidth,
+                        leftOffset + width,
                         topOffset + mDecoratedChildHeight);
             } else {
                 //Re-attach the cached view at its new index
                 attachView(view);
                 viewCache.remove(nextPosition);
+                width = getDecoratedMeasuredWidth(view);
             }
 
             if (i % mVisibleColumnCount == (mVisibleColumnCount - 1)) {
@@ -275,7 +392,7 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
                 topOffset += mDecoratedChildHeight;
                 //If we wrapped without setting the column count, we've reached it
             } else {
-                leftOffset += mDecoratedChildWidth;
+                leftOffset += width;
             }
         }
 
@@ -287,17 +404,19 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
         for (int i = 0; i < viewCache.size(); i++) {
             recycler.recycleView(viewCache.valueAt(i));
         }
+        viewCache.clear();
     }
 
     private void fillGridCoverFlow(int direction, int emptyLeft, int emptyTop, RecyclerView.Recycler recycler) {
-        Log.d(TAG, "fillGridCoverFlow empty left = " + emptyLeft + "  direction = " + direction);
+        if (DEBUG) Log.d(TAG, "fillGridCoverFlow empty left = " + emptyLeft + "  direction = " + direction);
         mFirstVisiblePosition = getProperPosition(mFirstVisiblePosition);
         /*
          * First, we will detach all existing views from the layout.
          * detachView() is a lightweight operation that we can use to
          * quickly reorder views without a full add/remove.
          */
-        SparseArray<View> viewCache = new SparseArray<>(getChildCount());
+        final SparseArray<View> viewCache = mViewCache;
+        viewCache.clear();
         int startLeftOffset = getPaddingLeft() + emptyLeft;
         int startTopOffset = getPaddingTop() + emptyTop;
         if (getChildCount() != 0) {
@@ -306,10 +425,10 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
             startTopOffset = getDecoratedTop(topView);
             switch (direction) {
                 case DIRECTION_START:
-                    startLeftOffset -= mDecoratedChildWidth;
+                    startLeftOffset -= getItemWidth(getProperPosition(mFirstVisiblePosition - 1));
                     break;
                 case DIRECTION_END:
-                    startLeftOffset += mDecoratedChildWidth;
+                    startLeftOffset += getDecoratedMeasuredWidth(topView);
                     break;
             }
 
@@ -352,7 +471,6 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
         int leftOffset = startLeftOffset;
         int topOffset = startTopOffset;
         int visibleItems = getVisibleChildCount();
-        int centeredChild = Math.round((float) visibleItems / 2.0f) - 1;
 
 //        Log.d(TAG, "startLeftOffset = " + startLeftOffset);
 //        Log.d(TAG, "centeredChild = " + centeredChild);
@@ -360,6 +478,7 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
             int nextPosition = positionOfIndex(i);
             //Layout this position
             View view = viewCache.get(nextPosition);
+            int width;
 
             if (view == null) {
                 /*
@@ -370,103 +489,211 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
                  */
                 view = recycler.getViewForPosition(nextPosition);
                 addView(view);
-                measureChildWithMargins(view, 0, 0);
+                invalidateTransform(view);
+                width = measureItem(view, nextPosition);
                 /*
                  * It is prudent to measure/layout each new view we
                  * receive from the Recycler. We don't have to do
                  * this for views we are just re-arranging.
                  */
                 layoutDecorated(view, leftOffset, topOffset,
-                        leftOffset + mDecoratedChildWidth, topOffset + mDecoratedChildHeight);
+                        leftOffset + width, topOffset + mDecoratedChildHeight);
             } else {
                 attachView(view);
                 viewCache.remove(nextPosition);
+                width = getDecoratedMeasuredWidth(view);
             }
 
-            leftOffset += mDecoratedChildWidth;
+            leftOffset += width;
         }
 
+        applyCoverFlowOffsets();
+        scaleAllItems();
+
+        /*
+         * Finally, we ask the Recycler to scrap and store any views
+         * that we did not re-attach. These are views that are not currently
+         * necessary because they are no longer visible.
+         */
+        for (int i = 0; i < viewCache.size(); i++) {
+            if (DEBUG) Log.d(TAG, "Recycling view at " + viewCache.valueAt(i));
+            recycler.recycleView(viewCache.valueAt(i));
+        }
+        viewCache.clear();
+    }
+
+    /**
+     * Undo cover flow offsets applied in the last fill. Offsets are stored by child index, so
+     * this should be called before children are reordered or detached.
+     */
+    private void removeAllOffsets() {
+        final int count = Math.min(getChildCount(), mChildOffsets.length);
+        for (int i = 0; i < count; i++) {
+            if (mChildOffsets[i] != 0) getChildAt(i).offsetLeftAndRight(-mChildOffsets[i]);
+        }
+        Arrays.fill(mChildOffsets, 0);
+    }
+
+    @Override
+    protected int getChildOffset(int childIndex) {
+        return childIndex < mChildOffsets.length ? mChildOffsets[childIndex] : 0;
+    }
+
+    /**
+     * Pull the non-centered children towards the centered one, so that scaled items are shown
+     * side by side. Offsets are remembered to be undone by {@link #removeAllOffsets()}.
+     */
+    private void applyCoverFlowOffsets() {
+        final int childCount = getChildCount();
+        if (mChildOffsets.length < childCount) mChildOffsets = new int[childCount];
+        int centeredChild = getCenteredChildSlot();
         int currentIndexOffset = 0;
         boolean fromStart = true;
         int totalOffset = 0;
         while (currentIndexOffset <= centeredChild) {
             int index = centeredChild + ((fromStart ? -1 : 1) * currentIndexOffset);
-            View view = getChildAt(index);
-            float scale = getScaleForChild(view, true);
-            int childWidth = (int) (mDecoratedChildWidth * scale);
-            int multiplier = index < centeredChild ? 1 : -1;
-            int offset = multiplier * ((mDecoratedChildWidth - childWidth) / 2 + totalOffset);
-
-            Log.d(TAG, "offset = " + offset + " totalOffset = " + totalOffset);
-            Log.d(TAG, "Position of child [" + index + "]  scale = " + scale + "  width = " + childWidth);
-
-            mPositions.put(view, offset);
-            view.offsetLeftAndRight(offset);
-
-            if (fromStart) {
-                totalOffset += offset * 2;
-                currentIndexOffset++;
+            View view = index < childCount ? getChildAt(index) : null;
+            if (view != null) {
+                float scale = getScaleForChild(view);
+                int width = getDecoratedMeasuredWidth(view);
+                int childWidth = (int) (width * scale);
+                int multiplier = index < centeredChild ? 1 : -1;
+                int offset = multiplier * ((width - childWidth) / 2 + totalOffset);
+
+                if (DEBUG) {
+                    Log.d(TAG, "offset = " + offset + " totalOffset = " + totalOffset);
+                    Log.d(TAG, "Position of child [" + index + "]  scale = " + scale + "  width = " + childWidth);
+                }
+
+                mChildOffsets[index] = offset;
+                view.offsetLeftAndRight(offset);
+
+                if (fromStart) totalOffset += offset * 2;
             }
 
+            if (fromStart) currentIndexOffset++;
             fromStart = !fromStart;
         }
+    }
 
-        scaleAllItems();
+    /**
+     * Child index which should hold the centered item in cover flow mode
+     *
+     * @return index of the centered child slot
+     */
+    private int getCenteredChildSlot() {
+        return Math.round((float) getVisibleChildCount() / 2.0f) - 1;
+    }
 
-        /*
-         * Finally, we ask the Recycler to scrap and store any views
-         * that we did not re-attach. These are views that are not currently
-         * necessary because they are no longer visible.
-         */
-        for (int i = 0; i < viewCache.size(); i++) {
-            Log.d(TAG, "Recycling view at " + viewCache.valueAt(i));
-            recycler.recycleView(viewCache.valueAt(i));
+    /**
+     * Child index which is currently crossing the center of the layout
+     *
+     * @return index of the centered child, could be out of the children range
+     */
+    private int getCenteredChildIndex() {
+        return clampToInt(getVirtualPositionAt(getCenterVirtualOffset()) - mFirstVisiblePosition);
+    }
+
+    /**
+     * Move the window of visible columns by one column. Only the column which went out of
+     * the screen is recycled and only the column which came into the screen is added, all the
+     * other children stay attached as they are.
+     *
+     * @param direction DIRECTION_END to move to the next column, DIRECTION_START to the previous
+     * @param recycler  recycler to get and recycle views
+     */
+    private void shiftWindow(int direction, RecyclerView.Recycler recycler) {
+        final View topView = getChildAt(0);
+        final int top = getDecoratedTop(topView);
+        if (direction == DIRECTION_END) {
+            final int right = getDecoratedRight(getChildAt(getChildCount() - 1));
+            removeAndRecycleViewAt(0, recycler);
+            mFirstVisiblePosition = getProperPosition(mFirstVisiblePosition + 1);
+            int position = positionOfIndex(getChildCount());
+            if (position < getItemCount()) {
+                addColumn(position, false, right, top, recycler);
+            }
+        } else {
+            final int left = getDecoratedLeft(topView);
+            mFirstVisiblePosition = getProperPosition(mFirstVisiblePosition - 1);
+            addColumn(mFirstVisiblePosition, true, left, top, recycler);
+            if (getChildCount() > mVisibleColumnCount) {
+                removeAndRecycleViewAt(getChildCount() - 1, recycler);
+            }
         }
     }
 
-    private void removeAllOffsets() {
-        for (View view : mPositions.keySet()) {
-            view.offsetLeftAndRight(-mPositions.get(view));
+    /**
+     * Add or remove columns at the end, so the number of children matches the window which
+     * could be resized by the overscan since the last scroll step
+     *
+     * @param recycler recycler to get and recycle views
+     */
+    private void fitWindow(RecyclerView.Recycler recycler) {
+        while (getChildCount() > mVisibleColumnCount) {
+            removeAndRecycleViewAt(getChildCount() - 1, recycler);
         }
-        mPositions.clear();
+        while (getChildCount() < mVisibleColumnCount) {
+            int position = positionOfIndex(getChildCount());
+            if (position >= getItemCount()) break;
+            final View last = getChildAt(getChildCount() - 1);
+            addColumn(position, false, getDecoratedRight(last), getDecoratedTop(last), recycler);
+        }
+    }
+
+    /**
+     * Add the column next to the edge of the attached children. Column width is known only
+     * after it is measured, so the column is laid out from the edge.
+     *
+     * @param position adapter position
+     * @param atStart  true to add before the first child, false to add after the last one
+     * @param edge     left edge of the first child or right edge of the last child
+     * @param top      top of the column
+     * @param recycler recycler to get the view
+     */
+    private void addColumn(int position, boolean atStart, int edge, int top, RecyclerView.Recycler recycler) {
+        View view = obtainColumnView(position, recycler);
+        addView(view, atStart ? 0 : -1);
+        invalidateTransform(view);
+        int width = measureItem(view, position);
+        int left = atStart ? edge - width : edge;
+        layoutDecorated(view, left, top, left + width, top + mDecoratedChildHeight);
     }
 
     private int scrollHorizontallyGalleryBy(int dx, RecyclerView.Recycler recycler, @SuppressWarnings("UnusedParameters") RecyclerView.State state) {
         //Take leftmost measurements from the top-left child
         final View topView = getChildAt(0);
         //Take rightmost measurements from the top-right child
-        int offsetIndex = 0;
-        View bottomView = null;
-        while (offsetIndex < mVisibleColumnCount && bottomView == null) {
-            offsetIndex++;
-            bottomView = getChildAt(mVisibleColumnCount - offsetIndex);
-        }
+        final View bottomView = getChildAt(getChildCount() - 1);
 
+        //Bounds are reached when the first or the last item is centered
+        final int firstCenteredLeft = getCenteredItemOffset(0);
+        final int lastCenteredLeft = getCenteredItemOffset(getItemCount() - 1);
         if (getFirstVisibleColumn() == 0) mFirstItemOffset = getDecoratedLeft(topView);
         else mFirstItemOffset = 0;
         if (mFirstItemOffset < 0) mFirstItemOffset = 0;
-        else if (mFirstItemOffset > getCenteredItemOffset())
-            mFirstItemOffset = getCenteredItemOffset();
+        else if (mFirstItemOffset > firstCenteredLeft)
+            mFirstItemOffset = firstCenteredLeft;
 
 //        Log.d(TAG, "getLastVisibleColumn() = " + getLastVisibleColumn() + "   getTotalColumnCount() = " + getTotalColumnCount());
         if (getLastVisibleColumn() >= getTotalColumnCount())
             mLastItemOffset = getHorizontalSpace() - getDecoratedRight(bottomView);
         else mLastItemOffset = 0;
         if (mLastItemOffset < 0) mLastItemOffset = 0;
-        else if (mLastItemOffset > getCenteredItemOffset() - getPaddingRight())
-            mLastItemOffset = getCenteredItemOffset() - getPaddingRight();
+        else if (mLastItemOffset > lastCenteredLeft - getPaddingRight())
+            mLastItemOffset = lastCenteredLeft - getPaddingRight();
 
         int delta;
         boolean leftBoundReached = getFirstVisibleColumn() == 0 &&
-                mFirstItemOffset >= getCenteredItemOffset();
+                mFirstItemOffset >= firstCenteredLeft;
         boolean rightBoundReached = getLastVisibleColumn() >= getTotalColumnCount() &&
-                mLastItemOffset >= getCenteredItemOffset() - getPaddingRight();
+                mLastItemOffset >= lastCenteredLeft - getPaddingRight();
 
         if (dx > 0) { // Contents are scrolling left
             //Check right bound
             if (rightBoundReached) {
                 //If we've reached the last column, enforce limits
-                int rightOffset = (getHorizontalSpace() - getCenteredItemOffset()) - getDecoratedRight(bottomView) + getPaddingRight();
+                int rightOffset = (getHorizontalSpace() - lastCenteredLeft) - getDecoratedRight(bottomView) + getPaddingRight();
                 delta = Math.max(-dx, rightOffset);
             } else {
                 //No limits while the last column isn't visible
@@ -475,7 +702,7 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
         } else { // Contents are scrolling right
             //Check left bound
             if (leftBoundReached) {
-                int leftOffset = -getDecoratedLeft(topView) + getPaddingLeft() + getCenteredItemOffset();
+                int leftOffset = -getDecoratedLeft(topView) + getPaddingLeft() + firstCenteredLeft;
                 delta = Math.min(-dx, leftOffset);
             } else {
                 delta = -dx;
@@ -483,19 +710,28 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
         }
         offsetChildrenHorizontal(delta);
 
+        /*
+         * Only columns crossing the edges are recycled or added. When the visible set
+         * is unchanged the children are just offset, without any detach/attach.
+         * Overscan columns are kept beyond the left edge as well.
+         */
+        final int overscan = mOverscanColumns;
         if (dx > 0) {
-            if (getDecoratedRight(topView) < 0 && !rightBoundReached) {
-                fillGridGallery(DIRECTION_END, mFirstItemOffset, 0, recycler);
-            } else if (!rightBoundReached) {
-                fillGridGallery(DIRECTION_NONE, mFirstItemOffset, 0, recycler);
+            if (!rightBoundReached) {
+                while (getChildCount() > overscan + 1 && getDecoratedRight(getChildAt(overscan)) < 0
+                        && mFirstVisiblePosition < getItemCount() - 1) {
+                    shiftWindow(DIRECTION_END, recycler);
+                }
             }
         } else {
-            if (getDecoratedLeft(topView) > 0 && !leftBoundReached) {
-                fillGridGallery(DIRECTION_START, mFirstItemOffset, 0, recycler);
-            } else if (!leftBoundReached) {
-                fillGridGallery(DIRECTION_NONE, mFirstItemOffset, 0, recycler);
+            if (!leftBoundReached) {
+                while (mFirstVisiblePosition > 0
+                        && getDecoratedLeft(getChildAt(Math.min(overscan, getChildCount() - 1))) > 0) {
+                    shiftWindow(DIRECTION_START, recycler);
+                }
             }
         }
+        fitWindow(recycler);
 
         scaleAllItems();
 
@@ -509,24 +745,31 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
     }
 
     private int scrollHorizontallyCoverFlowBy(int dx, RecyclerView.Recycler recycler, @SuppressWarnings("UnusedParameters") RecyclerView.State state) {
-        //Take leftmost measurements from the top-left child
-        final View topView = getChildAt(0);
+        removeAllOffsets();
         offsetChildrenHorizontal(-dx);
-        Log.d(TAG, "decoration left = " + getDecoratedLeft(topView));
+        if (DEBUG) Log.d(TAG, "decoration left = " + getDecoratedLeft(getChildAt(0)));
 
-        if (dx > 0) {
-            if (getDecoratedRight(topView) < 0) {
-                fillGridCoverFlow(DIRECTION_END, recycler);
-            } else {
-                fillGridCoverFlow(DIRECTION_NONE, recycler);
-            }
-        } else {
-            if (getDecoratedLeft(topView) > 0) {
-                fillGridCoverFlow(DIRECTION_START, recycler);
-            } else {
-                fillGridCoverFlow(DIRECTION_NONE, recycler);
-            }
+        /*
+         * Keep the centered item in the centered slot. Usually at most one column enters
+         * or leaves per frame, so only that column is recycled or added.
+         */
+        final int centeredChild = getCenteredChildSlot();
+        int shift = getCenteredChildIndex() - centeredChild;
+        if (Math.abs(shift) >= getVisibleChildCount()) {
+            //Jump is bigger than the window, lay out everything from scratch
+            int emptyLeft = getDecoratedLeft(getChildAt(0)) - getPaddingLeft()
+                    + getColumnsWidth(mFirstVisiblePosition, (long) mFirstVisiblePosition + shift);
+            mFirstVisiblePosition = getProperPosition((long) mFirstVisiblePosition + shift);
+            detachAndScrapAttachedViews(recycler);
+            fillGridCoverFlow(DIRECTION_NONE, emptyLeft, 0, recycler);
+            return dx;
         }
+        for (; shift > 0; shift--) shiftWindow(DIRECTION_END, recycler);
+        for (; shift < 0; shift++) shiftWindow(DIRECTION_START, recycler);
+        fitWindow(recycler);
+
+        applyCoverFlowOffsets();
+        scaleAllItems();
 
         /*
          * Return value determines if a boundary has been reached
@@ -537,44 +780,48 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
         return dx;
     }
 
-    private void fillGridCoverFlow(int direction, RecyclerView.Recycler recycler) {
-        removeAllOffsets();
-        fillGridCoverFlow(direction, 0, 0, recycler);
-    }
-
     private int getOffsetToItemCoverFlow(int position) {
         if (position < 0 || position >= getTotalColumnCount()) return 0;
         View zeroChild = getChildAt(0);
         if (zeroChild == null) return 0;
-        int left = getDecoratedLeft(zeroChild) - getPaddingLeft();
-        int zeroChildPosition = positionOfIndex(0);
-        int columnsOffset = position - zeroChildPosition;
-        if (Math.abs(columnsOffset) > getItemCount() / 2)
-            columnsOffset = getItemCount() + columnsOffset;
-        int columnsOffsetWidth = columnsOffset * mDecoratedChildWidth;
-        int offset = left - getCenteredItemOffset() + columnsOffsetWidth;
-        return (offset >= -1 && offset <= 1) ? 0 : offset;
+        int left = getDecoratedLeft(zeroChild) - getChildOffset(0) - getPaddingLeft();
+        long columnsOffsetWidth = getVirtualOffset(position) - getVirtualOffset(mFirstVisiblePosition);
+        long offset = left - getCenteredItemOffset(position) + columnsOffsetWidth;
+        //Take the shorter way around the loop
+        long loopWidth = mWidthIndex.getTotalWidth();
+        if (offset > loopWidth / 2) offset -= loopWidth;
+        else if (offset < -loopWidth / 2) offset += loopWidth;
+        return (offset >= -1 && offset <= 1) ? 0 : clampToInt(offset);
     }
 
     private int getOffsetToItemGallery(int position) {
         if (position < 0 || position >= getTotalColumnCount()) return 0;
         View zeroChild = getChildAt(0);
         if (zeroChild == null) return 0;
-        int left = getDecoratedLeft(zeroChild) - getPaddingLeft();
-        int zeroChildPosition = positionOfIndex(0);
-        int columnsOffset = (position - zeroChildPosition) * mDecoratedChildWidth;
-        int offset = left - getCenteredItemOffset() + columnsOffset;
-        return (offset >= -1 && offset <= 1) ? 0 : offset;
+        int left = getDecoratedLeft(zeroChild) - getChildOffset(0) - getPaddingLeft();
+        long columnsOffset = getVirtualOffset(position) - getVirtualOffset(mFirstVisiblePosition);
+        long offset = left - getCenteredItemOffset(position) + columnsOffset;
+        return (offset >= -1 && offset <= 1) ? 0 : clampToInt(offset);
     }
 
-    private int getProperPositionGallery(int position) {
-        return position;
+    private int getProperPositionGallery(long position) {
+        return clampToInt(position);
     }
 
-    private int getProperPositionCoverFlow(int position) {
-        if (position < 0) position = getItemCount() + (position % getItemCount());
-        else if (position >= getItemCount()) position = position % getItemCount();
-        return position;
+    /*
+     * Window positions are at most one loop away from the data set range, so they are wrapped
+     * by a single addition. Division is left for the far jumps only.
+     */
+    private int getProperPositionCoverFlow(long position) {
+        final int count = getItemCount();
+        if (count == 0) return 0;
+        if (position >= count) position -= count;
+        else if (position < 0) position += count;
+        if (position < 0 || position >= count) {
+            position %= count;
+            if (position < 0) position += count;
+        }
+        return (int) position;
     }
 
     private int getFirstVisibleColumn() {
@@ -582,10 +829,11 @@ public class GalleryLayoutManager extends BaseGalleryLayoutManager {
     }
 
     private int getLastVisibleColumn() {
-        return getFirstVisibleColumn() + mVisibleColumnCount;
+        //Window could be filled only partially while the overscan grows
+        return getFirstVisibleColumn() + getChildCount();
     }
 
     private boolean isCoverFlow() {
-        return mShowItemsInLoop && getVisibleChildCount() < getItemCount();
+        return isLoopLayout();
     }
 }
@@ -1,12 +1,17 @@
 package com.ap.androidltest.widget;
 
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.Parcelable;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
+import android.view.ViewConfiguration;
+import android.widget.Scroller;
 
 import com.ap.androidltest.R;
 import com.ap.androidltest.widget.decoration.InsetDecoration;
@@ -20,12 +25,66 @@ import com.ap.androidltest.widget.decoration.InsetDecoration;
 public class GalleryRecyclerView extends RecyclerView {
 
     private static final String TAG = GalleryRecyclerView.class.getSimpleName();
+    /* Default size of the RecyclerView cache of detached but still bound views */
+    private static final int DEFAULT_ITEM_VIEW_CACHE_SIZE = 2;
+    /* Children are always drawn without hardware layers */
+    public static final int LAYER_POLICY_NONE = 0;
+    /* Children are drawn into hardware layers only while the gallery is scrolling */
+    public static final int LAYER_POLICY_WHILE_SCROLLING = 1;
     private InsetDecoration mDefaultDecoration;
     private BaseGalleryLayoutManager mLayoutManager;
     private RecyclerView.OnScrollListener mScrollListener;
     private OnItemClickListener mItemClickListener;
     private int mCenteredPosition = 0;
     private OnCenteredPositionChangedListener mCenteredPositionChangedListener;
+    private GalleryImagePreloader mImagePreloader;
+    private Scroller mFlingPredictor;
+    private int mMinFlingVelocity;
+    private int mMaxFlingVelocity;
+    private boolean mPrefetchScheduled;
+    /* Adapter was notified about changes which no layout pass has applied yet */
+    private boolean mAdapterUpdatePending;
+    private int mLayerPolicy = LAYER_POLICY_WHILE_SCROLLING;
+    private boolean mChildLayersEnabled;
+    private RecyclerListener mRecyclerListener;
+    /* Pool shared with the other galleries of the same item layout */
+    private SharedViewPool mSharedPool;
+    /* Prefetch items one by one, when the main thread has nothing else to do between frames */
+    private final MessageQueue.IdleHandler mPrefetchIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            boolean hasMore = mLayoutManager != null && canPrefetch()
+                    && mLayoutManager.prefetchNextItem();
+            if (!hasMore) mPrefetchScheduled = false;
+            return hasMore;
+        }
+    };
+    private final AdapterDataObserver mAdapterUpdateObserver = new AdapterDataObserver() {
+        @Override
+        public void onChanged() {
+            mAdapterUpdatePending = true;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            mAdapterUpdatePending = true;
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            mAdapterUpdatePending = true;
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            mAdapterUpdatePending = true;
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            mAdapterUpdatePending = true;
+        }
+    };
 
     public GalleryRecyclerView(Context context) {
         this(context, null);
@@ -54,12 +113,27 @@ public class GalleryRecyclerView extends RecyclerView {
         mDefaultDecoration = new InsetDecoration(0, 30);
         addItemDecoration(mDefaultDecoration);
         setLayoutManager(new GalleryLayoutManager());
+        ViewConfiguration vc = ViewConfiguration.get(context);
+        mMinFlingVelocity = vc.getScaledMinimumFlingVelocity();
+        mMaxFlingVelocity = vc.getScaledMaximumFlingVelocity();
+        mFlingPredictor = new Scroller(context);
+        super.setRecyclerListener(new GalleryRecyclerListener());
         TypedArray ta = context.obtainStyledAttributes(attrs, R.styleable.GalleryRecyclerView, 0, 0);
         try {
             float minScale = ta.getFloat(R.styleable.GalleryRecyclerView_minScale, -1);
             float minAlpha = ta.getFloat(R.styleable.GalleryRecyclerView_minAlpha, -1);
             float maxZ = ta.getFloat(R.styleable.GalleryRecyclerView_maxZ, -1);
             setShowItemsInLoop(ta.getBoolean(R.styleable.GalleryRecyclerView_showItemsInLoop, false));
+            setPrefetchItemCount(ta.getInt(R.styleable.GalleryRecyclerView_prefetchItemCount,
+                    BaseGalleryLayoutManager.DEFAULT_PREFETCH_ITEM_COUNT));
+            setLayerPolicy(ta.getInt(R.styleable.GalleryRecyclerView_layerPolicy,
+                    LAYER_POLICY_WHILE_SCROLLING));
+            int itemLayout = ta.getResourceId(R.styleable.GalleryRecyclerView_itemLayout, 0);
+            if (itemLayout != 0) setItemLayout(itemLayout);
+            setOverscanLimits(ta.getInt(R.styleable.GalleryRecyclerView_overscanMin,
+                            BaseGalleryLayoutManager.DEFAULT_MIN_OVERSCAN),
+                    ta.getInt(R.styleable.GalleryRecyclerView_overscanMax,
+                            BaseGalleryLayoutManager.DEFAULT_MAX_OVERSCAN));
             if (minScale != -1) setMinimumScale(minScale);
             if (minAlpha != -1) setMinimumAlpha(minAlpha);
             if (maxZ != -1) setMaxZ(maxZ);
@@ -79,10 +153,35 @@ public class GalleryRecyclerView extends RecyclerView {
      */
     @Override
     public void setAdapter(Adapter adapter) {
+        if (getAdapter() != null) getAdapter().unregisterAdapterDataObserver(mAdapterUpdateObserver);
         super.setAdapter(adapter);
+        if (adapter != null) adapter.registerAdapterDataObserver(mAdapterUpdateObserver);
         setCenteredPosition(0);
     }
 
+    @Override
+    public void swapAdapter(Adapter adapter, boolean removeAndRecycleExistingViews) {
+        if (getAdapter() != null) getAdapter().unregisterAdapterDataObserver(mAdapterUpdateObserver);
+        super.swapAdapter(adapter, removeAndRecycleExistingViews);
+        if (adapter != null) adapter.registerAdapterDataObserver(mAdapterUpdateObserver);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        mAdapterUpdatePending = false;
+    }
+
+    /**
+     * Views can be created outside of a layout pass only when the adapter positions are the
+     * ones of the laid out children and no item animation moves them
+     */
+    private boolean canPrefetch() {
+        if (isLayoutRequested() || mAdapterUpdatePending) return false;
+        ItemAnimator animator = getItemAnimator();
+        return animator == null || !animator.isRunning();
+    }
+
     /**
      * Set the minimum scale for the elements which are not centered.
      *
@@ -101,6 +200,26 @@ public class GalleryRecyclerView extends RecyclerView {
         mLayoutManager.setMinimumAlpha(minAlpha);
     }
 
+    /**
+     * Set the transformer which defines how items look depending on their distance from the
+     * center. Minimum scale, minimum alpha, maximum z and scale start divider are parameters of
+     * the default transformer and are not used by custom ones.
+     *
+     * @param transformer item transformer, or null to use the default one
+     */
+    public void setItemTransformer(ItemTransformer transformer) {
+        mLayoutManager.setItemTransformer(transformer);
+    }
+
+    /**
+     * Set the policy which tells the item view holders their level of detail tier
+     *
+     * @param policy ViewLodPolicy or null to keep all the items in full detail
+     */
+    public void setViewLodPolicy(ViewLodPolicy policy) {
+        if (mLayoutManager != null) mLayoutManager.setViewLodPolicy(policy);
+    }
+
     /**
      * Set the maximum translation z which will be used to show floating effect for centered item.
      * NB! Currently only works on Android 5.0 and newer version
@@ -120,6 +239,98 @@ public class GalleryRecyclerView extends RecyclerView {
         mLayoutManager.setScaleStartDivider(scaleStartDivider);
     }
 
+    /**
+     * Set how many items in the scroll direction are created and bound in advance, during the
+     * spare time between frames. Prefetched views wait in the RecyclerView cache.
+     *
+     * @param count number of items, 0 disables prefetch
+     */
+    public void setPrefetchItemCount(int count) {
+        if (mLayoutManager == null) return;
+        mLayoutManager.setPrefetchItemCount(count);
+        setItemViewCacheSize(DEFAULT_ITEM_VIEW_CACHE_SIZE + mLayoutManager.getPrefetchItemCount());
+    }
+
+    /**
+     * Share the pool of item views with the other galleries of the same item layout. Children
+     * are sent to the pool when the gallery is detached, so the next gallery doesn't inflate.
+     *
+     * @param layoutId item layout resource id inflated by the adapter
+     */
+    public void setItemLayout(int layoutId) {
+        mSharedPool = SharedViewPool.forLayout(getContext(), layoutId);
+        setRecycledViewPool(mSharedPool);
+    }
+
+    /**
+     * Holders could come from the pool of another gallery, so they are pointed to this one.
+     * Pool grows to keep the whole window of the fastest fling.
+     */
+    @Override
+    public void onViewAdded(View child) {
+        super.onViewAdded(child);
+        ViewHolder holder = getChildViewHolder(child);
+        if (holder instanceof GalleryViewHolder) ((GalleryViewHolder) holder).setGalleryRecyclerView(this);
+        if (mSharedPool != null && mLayoutManager != null) {
+            mSharedPool.ensureCapacity(holder.getItemViewType(), mLayoutManager.getMaxWindowColumnCount());
+        }
+    }
+
+    /**
+     * Set how many extra columns could be laid out off the screen on each side. Overscan grows
+     * with the scroll velocity up to the maximum and goes back to the minimum when idle.
+     *
+     * @param min columns kept at rest
+     * @param max columns laid out during the fastest flings
+     */
+    public void setOverscanLimits(int min, int max) {
+        if (mLayoutManager == null) return;
+        mLayoutManager.setOverscanLimits(min, max);
+    }
+
+    /**
+     * Set when children should be drawn into hardware layers. With layers, alpha and scale
+     * changes while scrolling don't redraw the whole card.
+     *
+     * @param policy LAYER_POLICY_NONE or LAYER_POLICY_WHILE_SCROLLING
+     */
+    public void setLayerPolicy(int policy) {
+        mLayerPolicy = policy;
+        setChildLayersEnabled(policy == LAYER_POLICY_WHILE_SCROLLING
+                && getScrollState() != SCROLL_STATE_IDLE);
+    }
+
+    public int getLayerPolicy() {
+        return mLayerPolicy;
+    }
+
+    private void setChildLayersEnabled(boolean enabled) {
+        mChildLayersEnabled = enabled;
+        updateChildLayers();
+    }
+
+    /**
+     * Apply current layer type to all the children. Only children with a different layer type
+     * are changed, so it is cheap to call on every scroll step for the newly added children.
+     */
+    private void updateChildLayers() {
+        final int layerType = mChildLayersEnabled ? LAYER_TYPE_HARDWARE : LAYER_TYPE_NONE;
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getLayerType() != layerType) child.setLayerType(layerType, null);
+        }
+    }
+
+    /**
+     * Set the recycler listener
+     *
+     * @param listener RecyclerView.RecyclerListener
+     */
+    @Override
+    public void setRecyclerListener(RecyclerListener listener) {
+        mRecyclerListener = listener;
+    }
+
     /**
      * Returns currently used layout manager in Gallery
      *
@@ -145,6 +356,37 @@ public class GalleryRecyclerView extends RecyclerView {
         super.setLayoutManager(layout);
     }
 
+    /**
+     * Children are measured again, as decoration insets change their size
+     */
+    @Override
+    public void addItemDecoration(ItemDecoration decor, int index) {
+        super.addItemDecoration(decor, index);
+        invalidateMeasureCache();
+    }
+
+    @Override
+    public void removeItemDecoration(ItemDecoration decor) {
+        super.removeItemDecoration(decor);
+        invalidateMeasureCache();
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        invalidateMeasureCache();
+    }
+
+    /**
+     * Measure all the children again on the next layout. Should be called after the insets of
+     * the default decoration are changed.
+     */
+    public void invalidateMeasureCache() {
+        if (mLayoutManager == null) return;
+        mLayoutManager.invalidateMeasureCache();
+        requestLayout();
+    }
+
     /**
      * Return default decoration used in GalleryRecyclerView
      *
@@ -158,12 +400,24 @@ public class GalleryRecyclerView extends RecyclerView {
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
         super.setOnScrollListener(new OnScrollListener());
+        if (mSharedPool != null && mLayoutManager != null) {
+            setItemViewCacheSize(DEFAULT_ITEM_VIEW_CACHE_SIZE + mLayoutManager.getPrefetchItemCount());
+        }
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         super.setOnScrollListener(null);
+        if (mPrefetchScheduled) {
+            Looper.myQueue().removeIdleHandler(mPrefetchIdleHandler);
+            mPrefetchScheduled = false;
+        }
+        if (mSharedPool != null && mLayoutManager != null) {
+            //Cached views are moved to the pool too, no view should stay private to this gallery
+            setItemViewCacheSize(0);
+            mLayoutManager.recycleAllChildren();
+        }
     }
 
     /**
@@ -183,7 +437,7 @@ public class GalleryRecyclerView extends RecyclerView {
      */
     @Override
     public void smoothScrollToPosition(int position) {
-//        smoothScrollBy(mLayoutManager.getOffsetToItem(position), 0);
+        super.smoothScrollToPosition(position);
     }
 
     /**
@@ -193,7 +447,31 @@ public class GalleryRecyclerView extends RecyclerView {
      */
     @Override
     public void scrollToPosition(int position) {
-//        scrollBy(mLayoutManager.getOffsetToItem(position), 0);
+        super.scrollToPosition(position);
+    }
+
+    /**
+     * Fling is replaced by one animation which ends on the center of the item where the fling
+     * would stop. The item is predicted from the initial velocity, so there is no corrective
+     * scroll after the fling.
+     *
+     * @param velocityX initial horizontal velocity in pixels per second
+     * @param velocityY initial vertical velocity in pixels per second
+     * @return true if the fling was started
+     */
+    @Override
+    public boolean fling(int velocityX, int velocityY) {
+        if (mLayoutManager == null || getAdapter() == null) return super.fling(velocityX, velocityY);
+        if (Math.abs(velocityX) < mMinFlingVelocity) return false;
+        velocityX = Math.max(-mMaxFlingVelocity, Math.min(velocityX, mMaxFlingVelocity));
+
+        mFlingPredictor.fling(0, 0, velocityX, 0, Integer.MIN_VALUE, Integer.MAX_VALUE, 0, 0);
+        int distance = mFlingPredictor.getFinalX();
+        int duration = mFlingPredictor.getDuration();
+        mFlingPredictor.abortAnimation();
+        //Window grows before the first frame of the fling, later frames measure the velocity
+        mLayoutManager.setScrollVelocity(velocityX);
+        return mLayoutManager.snapToCenter(this, distance, duration);
     }
 
     /**
@@ -245,6 +523,16 @@ public class GalleryRecyclerView extends RecyclerView {
         return mCenteredPosition;
     }
 
+    /**
+     * Returns fractional centered position, which changes smoothly while scrolling. Useful to
+     * drive animations which depend on the scroll progress.
+     *
+     * @return centered position with the fraction of the scroll to the next item
+     */
+    public float getCenteredPositionFloat() {
+        return mLayoutManager != null ? mLayoutManager.getCenteredPositionFloat() : mCenteredPosition;
+    }
+
     /**
      * Set current centered position and notify listener about position change
      *
@@ -252,11 +540,26 @@ public class GalleryRecyclerView extends RecyclerView {
      */
     private void setCenteredPosition(int newCenteredPosition) {
         if (newCenteredPosition == mCenteredPosition) return;
+        int oldCenteredPosition = mCenteredPosition;
         mCenteredPosition = newCenteredPosition;
+        if (getAdapter() instanceof GalleryAdapter)
+            ((GalleryAdapter) getAdapter()).onCenteredPositionChanged(this, newCenteredPosition);
+        if (mImagePreloader != null)
+            mImagePreloader.onCenteredPositionChanged(this, oldCenteredPosition, newCenteredPosition);
         if (mCenteredPositionChangedListener != null)
             mCenteredPositionChangedListener.onCenteredPositionChanged(mCenteredPosition);
     }
 
+    /**
+     * Set preloader which loads the images of the items ahead of the scroll
+     *
+     * @param preloader GalleryImagePreloader or null to stop preloading
+     */
+    public void setImagePreloader(GalleryImagePreloader preloader) {
+        if (mImagePreloader != null && mImagePreloader != preloader) mImagePreloader.clear();
+        mImagePreloader = preloader;
+    }
+
     /**
      * Return do items shown currently in loop
      *
@@ -300,6 +603,11 @@ public class GalleryRecyclerView extends RecyclerView {
             super.onScrolled(recyclerView, dx, dy);
             if (mScrollListener != null) mScrollListener.onScrolled(recyclerView, dx, dy);
             setCenteredPosition(mLayoutManager.getCurrentCenteredPosition());
+            if (mChildLayersEnabled) updateChildLayers();
+            if (!mPrefetchScheduled && mLayoutManager.getPrefetchItemCount() > 0) {
+                mPrefetchScheduled = true;
+                Looper.myQueue().addIdleHandler(mPrefetchIdleHandler);
+            }
         }
 
         @Override
@@ -307,11 +615,47 @@ public class GalleryRecyclerView extends RecyclerView {
             super.onScrollStateChanged(recyclerView, newState);
             if (mScrollListener != null)
                 mScrollListener.onScrollStateChanged(recyclerView, newState);
+            if (mLayerPolicy == LAYER_POLICY_WHILE_SCROLLING) {
+                boolean scrolling = RecyclerView.SCROLL_STATE_IDLE != newState;
+                if (scrolling != mChildLayersEnabled) setChildLayersEnabled(scrolling);
+            }
             if (RecyclerView.SCROLL_STATE_IDLE == newState) {
                 int newPosition = mLayoutManager.getCurrentCenteredPosition();
-//                smoothScrollBy(mLayoutManager.getOffsetToItem(newPosition), 0);
+                //Drag was released without fling, settle on the nearest item
+                int offset = mLayoutManager.getOffsetToItem(newPosition);
+                if (offset != 0) smoothScrollBy(offset, 0);
+                //Scroll really stopped, overscan columns are released
+                else {
+                    mLayoutManager.setScrollVelocity(0);
+                    logPrefetchCounters();
+                }
                 setCenteredPosition(newPosition);
             }
         }
     }
+
+    /**
+     * Log how many columns of the finished scroll found their view prefetched, then start
+     * counting the next scroll from zero
+     */
+    private void logPrefetchCounters() {
+        int hits = mLayoutManager.getPrefetchHitCount();
+        int misses = mLayoutManager.getPrefetchMissCount();
+        if (hits + misses == 0) return;
+        Log.d(TAG, "Prefetch hits " + hits + ", misses " + misses);
+        mLayoutManager.resetPrefetchCounters();
+    }
+
+    /**
+     * Releases hardware layers of the views sent to the recycler
+     */
+    private class GalleryRecyclerListener implements RecyclerListener {
+        @Override
+        public void onViewRecycled(ViewHolder holder) {
+            if (holder.itemView.getLayerType() != LAYER_TYPE_NONE) {
+                holder.itemView.setLayerType(LAYER_TYPE_NONE, null);
+            }
+            if (mRecyclerListener != null) mRecyclerListener.onViewRecycled(holder);
+        }
+    }
 }
@@ -30,6 +30,10 @@ public class GalleryViewHolder extends RecyclerView.ViewHolder {
     };
 
     WeakReference<GalleryRecyclerView> mGalleryRecyclerView;
+    /* Position the holder was bound to by GalleryAdapter, partial binds are allowed only to it */
+    int mBoundPosition = RecyclerView.NO_POSITION;
+    /* Level of detail tier the views are rendered in, kept while the holder is recycled */
+    private int mLodTier = ViewLodPolicy.TIER_FULL;
 
     public GalleryViewHolder(View itemView, GalleryRecyclerView galleryRecyclerView) {
         super(itemView);
@@ -40,5 +44,45 @@ public class GalleryViewHolder extends RecyclerView.ViewHolder {
         }
     }
 
+    void setGalleryRecyclerView(GalleryRecyclerView galleryRecyclerView) {
+        if (mGalleryRecyclerView.get() != galleryRecyclerView) {
+            mGalleryRecyclerView = new WeakReference<>(galleryRecyclerView);
+        }
+    }
 
+    void setLodTier(int tier) {
+        if (tier == mLodTier) return;
+        int oldTier = mLodTier;
+        mLodTier = tier;
+        onLodTierChanged(oldTier, tier);
+    }
+
+    /**
+     * Level of detail tier the views are rendered in
+     *
+     * @return tier, {@link ViewLodPolicy#TIER_FULL} if the gallery has no level of detail policy
+     */
+    public int getLodTier() {
+        return mLodTier;
+    }
+
+    /**
+     * Level of detail tier of the item has changed, views should be switched to render in the
+     * new tier. Called only on the changes, not on every scroll step.
+     *
+     * @param oldTier tier the views are rendered in
+     * @param newTier new tier, see {@link ViewLodPolicy}
+     */
+    protected void onLodTierChanged(int oldTier, int newTier) {
+    }
+
+    /**
+     * Gallery which currently shows the holder, holders could move between galleries which
+     * share the view pool
+     *
+     * @return gallery or null
+     */
+    public GalleryRecyclerView getGalleryRecyclerView() {
+        return mGalleryRecyclerView.get();
+    }
 }
@@ -0,0 +1,46 @@
+package com.ap.androidltest.widget;
+
+/**
+ * Transformation of the gallery items depending on their distance from the center of the
+ * gallery. Transformer is sampled only once into the lookup table of the layout manager, so
+ * scrolling costs a table read no matter how complex the curves are.
+ */
+public interface ItemTransformer {
+
+    /**
+     * Calculate transformation of the item. Called only while the lookup table is built.
+     *
+     * @param distance signed distance from the center of the item to the center of the gallery
+     *                 in half screen widths. Negative for items on the left side
+     * @param out      transformation to fill, already reset to the identity
+     */
+    public void getTransform(float distance, Transform out);
+
+    /**
+     * Returns the distance after which the transformation doesn't change anymore
+     *
+     * @return absolute distance in half screen widths
+     */
+    public float getMaxDistance();
+
+    /**
+     * Properties applied to the item view
+     */
+    public static class Transform {
+        public float scale;
+        public float alpha;
+        public float translationZ;
+        /* Rotation around the vertical axis in degrees */
+        public float rotationY;
+        /* Horizontal translation in item widths, e.g. for parallax effects */
+        public float translationX;
+
+        void reset() {
+            scale = 1;
+            alpha = 1;
+            translationZ = 0;
+            rotationY = 0;
+            translationX = 0;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.ap.androidltest.widget;
+
+/**
+ * Decorated widths of the gallery items kept in a Fenwick tree, so the offset of any item and
+ * the item at any offset are found in O(log n). Items which were not measured yet are
+ * estimated by the default width. While all the items have the default width the tree is not
+ * even built, offsets are calculated in O(1) and no memory depends on the item count, so
+ * data sets of millions of items are fine. Offsets are long, as the total width of such data
+ * sets does not fit into int.
+ */
+public class ItemWidthIndex {
+
+    private int mCount;
+    private int mDefaultWidth = 1;
+    /* Widths and the tree are built only when some item differs from the default width */
+    private boolean mUniform = true;
+    private int[] mWidths = new int[0];
+    /* Fenwick tree of the widths, 1-based */
+    private long[] mTree = new long[1];
+    /* Widths were shifted by a structural change, the tree is built again before it is read */
+    private boolean mTreeDirty;
+    private long mTotalWidth;
+    /* Smallest known width, never goes up until the next reset */
+    private int mMinWidth = 1;
+    /* Highest power of two not bigger than the count, starting step of the tree search */
+    private int mSearchStep;
+
+    /**
+     * Forget all measured widths
+     *
+     * @param count        number of items
+     * @param defaultWidth width used for the items until they are measured
+     */
+    public void reset(int count, int defaultWidth) {
+        if (defaultWidth < 1) defaultWidth = 1;
+        mCount = count;
+        mDefaultWidth = defaultWidth;
+        mMinWidth = defaultWidth;
+        mUniform = true;
+        mTotalWidth = (long) count * defaultWidth;
+    }
+
+    /**
+     * Forget everything, the index has to be reset before it is used again
+     */
+    public void clear() {
+        reset(0, mDefaultWidth);
+    }
+
+    /**
+     * Insert items of the default width, known widths of the other items are kept
+     *
+     * @param positionStart position of the first inserted item
+     * @param itemCount     number of inserted items
+     */
+    public void insert(int positionStart, int itemCount) {
+        final int count = mCount + itemCount;
+        mTotalWidth += (long) itemCount * mDefaultWidth;
+        if (mUniform) {
+            mCount = count;
+            return;
+        }
+        if (mWidths.length < count) {
+            int[] widths = new int[Math.max(count, mWidths.length * 2)];
+            System.arraycopy(mWidths, 0, widths, 0, mCount);
+            mWidths = widths;
+            mTree = new long[widths.length + 1];
+        }
+        System.arraycopy(mWidths, positionStart, mWidths, positionStart + itemCount, mCount - positionStart);
+        for (int i = positionStart; i < positionStart + itemCount; i++) {
+            mWidths[i] = mDefaultWidth;
+        }
+        mCount = count;
+        mTreeDirty = true;
+    }
+
+    /**
+     * Remove items, known widths of the other items are kept
+     *
+     * @param positionStart position of the first removed item
+     * @param itemCount     number of removed items
+     */
+    public void remove(int positionStart, int itemCount) {
+        final int count = mCount - itemCount;
+        if (mUniform) {
+            mCount = count;
+            mTotalWidth = (long) count * mDefaultWidth;
+            return;
+        }
+        for (int i = positionStart; i < positionStart + itemCount; i++) {
+            mTotalWidth -= mWidths[i];
+        }
+        System.arraycopy(mWidths, positionStart + itemCount, mWidths, positionStart, count - positionStart);
+        mCount = count;
+        mTreeDirty = true;
+    }
+
+    /**
+     * Move the items, known widths of all the items are kept
+     *
+     * @param from      current position of the first moved item
+     * @param to        new position of the first moved item
+     * @param itemCount number of moved items
+     */
+    public void move(int from, int to, int itemCount) {
+        if (from == to || itemCount <= 0 || mUniform) return;
+        final int[] moved = new int[itemCount];
+        System.arraycopy(mWidths, from, moved, 0, itemCount);
+        //Items between the old and the new place shift over the gap
+        if (from < to) System.arraycopy(mWidths, from + itemCount, mWidths, from, to - from);
+        else System.arraycopy(mWidths, to, mWidths, to + itemCount, from - to);
+        System.arraycopy(moved, 0, mWidths, to, itemCount);
+        mTreeDirty = true;
+    }
+
+    /*
+     * Switch from the uniform widths to the tree, once the first item has a different width
+     */
+    private void materialize() {
+        if (mWidths.length < mCount) {
+            mWidths = new int[mCount];
+            mTree = new long[mCount + 1];
+        }
+        for (int i = 0; i < mCount; i++) {
+            mWidths[i] = mDefaultWidth;
+        }
+        mUniform = false;
+        mTreeDirty = true;
+    }
+
+    /*
+     * Build the tree in O(n), every node passes its sum to the parent. Structural changes only
+     * mark the tree dirty, so all the changes of one layout pass cost one build.
+     */
+    private void ensureTree() {
+        if (!mTreeDirty) return;
+        mTreeDirty = false;
+        mSearchStep = mCount > 0 ? Integer.highestOneBit(mCount) : 0;
+        for (int i = 0; i < mCount; i++) {
+            mTree[i + 1] = mWidths[i];
+        }
+        for (int i = 1; i <= mCount; i++) {
+            int parent = i + (i & -i);
+            //Parent index could overflow for the counts close to Integer.MAX_VALUE
+            if (parent > 0 && parent <= mCount) mTree[parent] += mTree[i];
+        }
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public int getWidth(int position) {
+        return mUniform ? mDefaultWidth : mWidths[position];
+    }
+
+    /**
+     * @return true while all the items have the default width
+     */
+    public boolean isUniform() {
+        return mUniform;
+    }
+
+    /**
+     * Update width of the measured item
+     *
+     * @param position item position
+     * @param width    decorated width of the item
+     */
+    public void setWidth(int position, int width) {
+        if (width < 1) width = 1;
+        if (mUniform) {
+            if (width == mDefaultWidth) return;
+            materialize();
+        }
+        final int delta = width - mWidths[position];
+        if (delta == 0) return;
+        mWidths[position] = width;
+        mTotalWidth += delta;
+        if (width < mMinWidth) mMinWidth = width;
+        if (mTreeDirty) return;
+        for (int i = position + 1; i > 0 && i <= mCount; i += i & -i) {
+            mTree[i] += delta;
+        }
+    }
+
+    /**
+     * Distance from the start of the first item to the start of the item
+     *
+     * @param position item position, could be equal to the count to get the total width
+     * @return offset in pixels
+     */
+    public long getOffset(int position) {
+        if (mUniform) return (long) position * mDefaultWidth;
+        ensureTree();
+        long offset = 0;
+        for (int i = position; i > 0; i -= i & -i) {
+            offset += mTree[i];
+        }
+        return offset;
+    }
+
+    /**
+     * Find the item which covers the offset
+     *
+     * @param offset distance from the start of the first item
+     * @return item position, clamped to the data set range
+     */
+    public int getPositionAt(long offset) {
+        if (mCount == 0 || offset < 0) return 0;
+        if (mUniform) return (int) Math.min(offset / mDefaultWidth, mCount - 1);
+        ensureTree();
+        //Descend the tree to the last item which starts not after the offset
+        int position = 0;
+        long remaining = offset;
+        for (int step = mSearchStep; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next > 0 && next <= mCount && mTree[next] <= remaining) {
+                position = next;
+                remaining -= mTree[next];
+            }
+        }
+        return Math.min(position, mCount - 1);
+    }
+
+    public long getTotalWidth() {
+        return mTotalWidth;
+    }
+
+    public int getMinWidth() {
+        return mMinWidth;
+    }
+}
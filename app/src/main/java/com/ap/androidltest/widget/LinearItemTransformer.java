@@ -0,0 +1,49 @@
+package com.ap.androidltest.widget;
+
+/**
+ * Default gallery transformer. Scale, alpha and translation z linearly go down with the
+ * distance from the center, until they reach their minimum values.
+ */
+public class LinearItemTransformer implements ItemTransformer {
+
+    private float mMinScale = 0.8f;
+    private float mMinAlpha = 1.0f;
+    private float mMaxZ = 0.0f;
+    private int mScaleStartDivider = 4;
+
+    @Override
+    public void getTransform(float distance, Transform out) {
+        float scale = 1 - Math.abs(distance) / mScaleStartDivider;
+        if (scale < 0) scale = 0;
+        out.scale = Math.max(scale, mMinScale);
+        out.alpha = Math.max(scale, mMinAlpha);
+        out.translationZ = mMaxZ * scale;
+    }
+
+    @Override
+    public float getMaxDistance() {
+        return mScaleStartDivider;
+    }
+
+    public void setMinimumScale(float minScale) {
+        if (minScale < 0) minScale = 0;
+        else if (minScale > 1.0f) minScale = 1.0f;
+        mMinScale = minScale;
+    }
+
+    public void setMinimumAlpha(float minAlpha) {
+        if (minAlpha < 0) minAlpha = 0;
+        else if (minAlpha > 1.0f) minAlpha = 1.0f;
+        mMinAlpha = minAlpha;
+    }
+
+    public void setMaxZ(float maxZ) {
+        if (maxZ < 0) maxZ = 0;
+        mMaxZ = maxZ;
+    }
+
+    public void setScaleStartDivider(int scaleStartDivider) {
+        if (scaleStartDivider < 1) scaleStartDivider = 1;
+        mScaleStartDivider = scaleStartDivider;
+    }
+}
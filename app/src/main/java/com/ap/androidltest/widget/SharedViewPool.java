@@ -0,0 +1,77 @@
+package com.ap.androidltest.widget;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Process-wide pools of the gallery item views, one pool per item layout. Gallery screens with
+ * the same item layout reuse the views inflated by each other, so switching between them
+ * doesn't inflate anything once the pool is warm. All the adapters which share a pool should
+ * create the same view holder class for the layout.
+ * Views keep the context they were inflated with, so a pool is replaced when it is requested
+ * by another context, e.g. after the activity was recreated. The activity should call
+ * {@link #clear(Context)} in onDestroy, so the pooled views don't keep it alive.
+ */
+public class SharedViewPool extends RecyclerView.RecycledViewPool {
+
+    /* Capacity of the RecycledViewPool for a view type which was not sized yet */
+    private static final int DEFAULT_MAX_SCRAP = 5;
+    private static final SparseArray<SharedViewPool> sPools = new SparseArray<>();
+    private final WeakReference<Context> mContext;
+    private final SparseIntArray mMaxScrap = new SparseIntArray();
+
+    private SharedViewPool(Context context) {
+        mContext = new WeakReference<>(context);
+    }
+
+    /**
+     * Get the pool for the item layout
+     *
+     * @param context  context the item views are inflated with
+     * @param layoutId item layout resource id
+     * @return shared pool
+     */
+    public static SharedViewPool forLayout(Context context, int layoutId) {
+        SharedViewPool pool = sPools.get(layoutId);
+        if (pool == null || pool.mContext.get() != context) {
+            pool = new SharedViewPool(context);
+            sPools.put(layoutId, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Drop the pools of the context and their views
+     *
+     * @param context context the item views were inflated with
+     */
+    public static void clear(Context context) {
+        for (int i = sPools.size() - 1; i >= 0; i--) {
+            SharedViewPool pool = sPools.valueAt(i);
+            if (pool.mContext.get() != context && pool.mContext.get() != null) continue;
+            pool.clear();
+            sPools.removeAt(i);
+        }
+    }
+
+    @Override
+    public void setMaxRecycledViews(int viewType, int max) {
+        mMaxScrap.put(viewType, max);
+        super.setMaxRecycledViews(viewType, max);
+    }
+
+    /**
+     * Grow the capacity for the view type, so the pool can keep at least the given number of
+     * views. Capacity is never lowered, as another gallery could need more views.
+     *
+     * @param viewType view type
+     * @param count    number of views
+     */
+    public void ensureCapacity(int viewType, int count) {
+        if (count > mMaxScrap.get(viewType, DEFAULT_MAX_SCRAP)) setMaxRecycledViews(viewType, count);
+    }
+}
@@ -0,0 +1,23 @@
+package com.ap.androidltest.widget;
+
+/**
+ * Level of detail of the gallery item views depending on their distance from the center of
+ * the gallery. Layout manager asks for the tier of every child on each transform pass, but the
+ * holder is told only when the tier of its item changes, see
+ * {@link GalleryViewHolder#onLodTierChanged(int, int)}.
+ */
+public interface ViewLodPolicy {
+
+    /* Tier of the items rendered with all the details, higher tiers render less */
+    public static final int TIER_FULL = 0;
+
+    /**
+     * Tier of the item at the distance. Called for every child on every scroll step, so it
+     * should be cheap.
+     *
+     * @param distance absolute distance from the center of the item to the center of the
+     *                 gallery in item widths
+     * @return tier, {@link #TIER_FULL} for the items with all the details
+     */
+    public int getTier(float distance);
+}
@@ -0,0 +1,230 @@
+package com.ap.androidltest.widget;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Inflates item views on a background thread before the first layout, so the adapter gets
+ * them ready in onCreateViewHolder instead of inflating them inside the frame. When no view is
+ * ready the adapter inflates it as usual. Views are inflated with a throwaway parent, so the
+ * layout params of the item root are kept.
+ * Views are kept per activity and inflated by an inflater cloned for the worker thread only,
+ * as LayoutInflater is not thread safe. The activity should call {@link #clear(Context)} in
+ * onDestroy, so its views are not kept after it.
+ */
+public class ViewPreInflater {
+
+    private static final String TAG = ViewPreInflater.class.getSimpleName();
+    private static ViewPreInflater sInstance;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, TAG);
+        }
+    });
+    /* Views of every activity which pre-inflates, by the activity */
+    private final Map<Context, Scope> mScopes = new HashMap<>();
+    private int mWarmCount;
+    private int mColdCount;
+
+    public static synchronized ViewPreInflater getInstance() {
+        if (sInstance == null) sInstance = new ViewPreInflater();
+        return sInstance;
+    }
+
+    /**
+     * Number of columns the gallery lays out at rest, the same way as the layout manager
+     * sizes its window
+     *
+     * @param space     width of the gallery
+     * @param itemWidth width of the item with its decoration insets
+     * @return columns count
+     */
+    public static int getColumnCount(int space, int itemWidth) {
+        if (itemWidth <= 0) return 1;
+        int count = space / itemWidth + 1;
+        if (space % itemWidth > 0) count++;
+        return count;
+    }
+
+    /**
+     * Start inflating the views in the background, so the given number of them is ready. Call
+     * on the main thread.
+     *
+     * @param context  activity of the gallery which will show the views
+     * @param layoutId item layout resource id
+     * @param count    number of views
+     */
+    public void preInflate(final Context context, final int layoutId, int count) {
+        final Scope scope;
+        final int missing;
+        synchronized (this) {
+            Scope current = mScopes.get(context);
+            if (current == null) {
+                //Worker owns the clone, the inflater of the activity stays on the main thread
+                current = new Scope(LayoutInflater.from(context).cloneInContext(context));
+                mScopes.put(context, current);
+            }
+            scope = current;
+            missing = count - scope.mRequestedCounts.get(layoutId);
+            if (missing <= 0) return;
+            scope.mRequestedCounts.put(layoutId, count);
+        }
+        for (int i = 0; i < missing; i++) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (ViewPreInflater.this) {
+                        if (scope.mCleared || scope.mRequestedCounts.get(layoutId) == 0) return;
+                    }
+                    View view = null;
+                    try {
+                        view = scope.mInflater.inflate(layoutId, new FrameLayout(context), false);
+                    } catch (RuntimeException e) {
+                        //Layout could need the main thread, it is inflated on demand then
+                        Log.w(TAG, "Cannot pre-inflate layout " + layoutId, e);
+                    }
+                    synchronized (ViewPreInflater.this) {
+                        //Views released or cleared meanwhile are not needed anymore
+                        if (scope.mCleared || scope.mRequestedCounts.get(layoutId) == 0) return;
+                        if (view == null) {
+                            scope.mRequestedCounts.put(layoutId, scope.mRequestedCounts.get(layoutId) - 1);
+                            return;
+                        }
+                        ArrayDeque<View> views = scope.mReadyViews.get(layoutId);
+                        if (views == null) {
+                            views = new ArrayDeque<>();
+                            scope.mReadyViews.put(layoutId, views);
+                        }
+                        views.add(view);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Get the pre-inflated view, or inflate it now if none is ready. Should be called from
+     * onCreateViewHolder.
+     *
+     * @param parent   parent passed to onCreateViewHolder
+     * @param layoutId item layout resource id
+     * @return item view, not attached to the parent
+     */
+    public View obtain(ViewGroup parent, int layoutId) {
+        View view = null;
+        synchronized (this) {
+            Scope scope = mScopes.get(parent.getContext());
+            ArrayDeque<View> views = scope != null ? scope.mReadyViews.get(layoutId) : null;
+            if (views != null) view = views.poll();
+            if (view != null) {
+                scope.mRequestedCounts.put(layoutId, scope.mRequestedCounts.get(layoutId) - 1);
+                mWarmCount++;
+            } else {
+                mColdCount++;
+            }
+        }
+        if (view == null) view = LayoutInflater.from(parent.getContext()).inflate(layoutId, parent, false);
+        return view;
+    }
+
+    /**
+     * Drop the views of the layout which were not used, e.g. when the gallery is destroyed
+     *
+     * @param context  activity of the gallery
+     * @param layoutId item layout resource id
+     */
+    public synchronized void release(Context context, int layoutId) {
+        Scope scope = mScopes.get(context);
+        if (scope == null) return;
+        ArrayDeque<View> views = scope.mReadyViews.get(layoutId);
+        if (views != null) views.clear();
+        scope.mRequestedCounts.delete(layoutId);
+    }
+
+    /**
+     * Drop all the views of the activity, should be called in its onDestroy
+     *
+     * @param context activity
+     */
+    public synchronized void clear(Context context) {
+        Scope scope = mScopes.remove(context);
+        if (scope == null) return;
+        scope.mCleared = true;
+        scope.mReadyViews.clear();
+        scope.mRequestedCounts.clear();
+    }
+
+    /**
+     * Number of views of the layout which are inflated and not obtained yet
+     *
+     * @param context  activity of the gallery
+     * @param layoutId item layout resource id
+     * @return ready views count
+     */
+    synchronized int getReadyCount(Context context, int layoutId) {
+        Scope scope = mScopes.get(context);
+        ArrayDeque<View> views = scope != null ? scope.mReadyViews.get(layoutId) : null;
+        return views != null ? views.size() : 0;
+    }
+
+    /**
+     * Number of views which were ready when the adapter asked for them
+     *
+     * @return warm inflations count
+     */
+    public synchronized int getWarmCount() {
+        return mWarmCount;
+    }
+
+    /**
+     * Number of views which the adapter had to inflate itself
+     *
+     * @return cold inflations count
+     */
+    public synchronized int getColdCount() {
+        return mColdCount;
+    }
+
+    public synchronized void resetCounters() {
+        mWarmCount = 0;
+        mColdCount = 0;
+    }
+
+    /**
+     * Views of one activity. Guarded by the pre-inflater, except the inflater which only the
+     * worker uses.
+     */
+    private static class Scope {
+        final LayoutInflater mInflater;
+        /* Inflated views by layout id */
+        final SparseArray<ArrayDeque<View>> mReadyViews = new SparseArray<>();
+        /* Views ready or being inflated by layout id */
+        final SparseIntArray mRequestedCounts = new SparseIntArray();
+        boolean mCleared;
+
+        Scope(LayoutInflater inflater) {
+            mInflater = inflater;
+        }
+    }
+}